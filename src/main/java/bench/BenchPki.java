@@ -0,0 +1,163 @@
+package bench;
+
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local three-level PKI (root CA → intermediate CA → {@code CN=localhost} leaf) for benchmarks that
+ * validate the server certificate instead of trusting everything. {@link #generate(String)} builds
+ * the whole hierarchy in memory with BouncyCastle's certificate builder; nothing touches disk.
+ *
+ * <p>{@code main} writes {@code server-chain.p12} (leaf key with the full chain, for
+ * {@code HybridTlsServer --keystore}) and {@code truststore.p12} (root only, for
+ * {@code HybridTlsClient --truststore}).
+ */
+final class BenchPki {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BenchPki.class);
+    static final String PASSWORD = "changeit";
+    static final String SERVER_ALIAS = "leaf";
+    static final String ROOT_ALIAS = "root";
+    private static final int VALIDITY_DAYS = 30;
+    private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+    private final KeyStore serverKeyStore;
+    private final KeyStore trustStore;
+
+    /**
+     * @param serverKeyStore key entry {@value #SERVER_ALIAS} holding the leaf key and its full chain
+     * @param trustStore     trusted certificate entry for the root CA
+     */
+    BenchPki(KeyStore serverKeyStore, KeyStore trustStore) {
+        this.serverKeyStore = serverKeyStore;
+        this.trustStore = trustStore;
+    }
+
+    KeyStore serverKeyStore() {
+        return serverKeyStore;
+    }
+
+    KeyStore trustStore() {
+        return trustStore;
+    }
+
+    X509Certificate[] chain() throws Exception {
+        Certificate[] chain = serverKeyStore.getCertificateChain(SERVER_ALIAS);
+        return Arrays.copyOf(chain, chain.length, X509Certificate[].class);
+    }
+
+    /** Generate a fresh hierarchy with {@code keyAlg} ("RSA" or "EC") keys at every level. */
+    static BenchPki generate(String keyAlg) throws Exception {
+        boolean ec = "EC".equalsIgnoreCase(keyAlg);
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(ec ? "EC" : "RSA");
+        if (ec) {
+            kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            kpg.initialize(2048);
+        }
+        String sigAlg = ec ? "SHA256withECDSA" : "SHA256withRSA";
+        KeyPair root = kpg.generateKeyPair();
+        KeyPair intermediate = kpg.generateKeyPair();
+        KeyPair leaf = kpg.generateKeyPair();
+
+        X509Certificate rootCert = issue("CN=Bench Root CA", root.getPublic(), null, root, sigAlg,
+                new BasicConstraints(true), new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+        X509Certificate intCert = issue("CN=Bench Intermediate CA", intermediate.getPublic(), rootCert, root,
+                sigAlg, new BasicConstraints(0), new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+        X509Certificate leafCert = issue("CN=localhost", leaf.getPublic(), intCert, intermediate, sigAlg,
+                new BasicConstraints(false),
+                new KeyUsage(ec ? KeyUsage.digitalSignature : KeyUsage.digitalSignature | KeyUsage.keyEncipherment));
+
+        char[] password = PASSWORD.toCharArray();
+        KeyStore server = KeyStore.getInstance("PKCS12");
+        server.load(null, null);
+        server.setKeyEntry(SERVER_ALIAS, leaf.getPrivate(), password, new Certificate[]{leafCert, intCert, rootCert});
+        KeyStore trust = KeyStore.getInstance("PKCS12");
+        trust.load(null, null);
+        trust.setCertificateEntry(ROOT_ALIAS, rootCert);
+        return new BenchPki(server, trust);
+    }
+
+    /**
+     * One certificate for {@code subject}, signed by {@code issuerKeys}. {@code issuerCert} is null for
+     * the self-signed root. Leaves (non-CA) also get {@code DNS:localhost} and the serverAuth EKU.
+     */
+    private static X509Certificate issue(String subject, PublicKey subjectKey, X509Certificate issuerCert,
+                                         KeyPair issuerKeys, String sigAlg, BasicConstraints constraints,
+                                         KeyUsage usage) throws Exception {
+        long now = System.currentTimeMillis();
+        X500Principal subjectName = new X500Principal(subject);
+        X500Principal issuerName = issuerCert != null ? issuerCert.getSubjectX500Principal() : subjectName;
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(issuerName,
+                BigInteger.valueOf(SERIAL.incrementAndGet()), new Date(now - TimeUnit.HOURS.toMillis(1)),
+                new Date(now + TimeUnit.DAYS.toMillis(VALIDITY_DAYS)), subjectName, subjectKey);
+
+        JcaX509ExtensionUtils extUtils = new JcaX509ExtensionUtils();
+        builder.addExtension(Extension.basicConstraints, true, constraints);
+        builder.addExtension(Extension.keyUsage, true, usage);
+        builder.addExtension(Extension.subjectKeyIdentifier, false, extUtils.createSubjectKeyIdentifier(subjectKey));
+        builder.addExtension(Extension.authorityKeyIdentifier, false, issuerCert != null
+                ? extUtils.createAuthorityKeyIdentifier(issuerCert)
+                : extUtils.createAuthorityKeyIdentifier(issuerKeys.getPublic()));
+        if (!constraints.isCA()) {
+            builder.addExtension(Extension.subjectAlternativeName, false,
+                    new GeneralNames(new GeneralName(GeneralName.dNSName, "localhost")));
+            builder.addExtension(Extension.extendedKeyUsage, false, new ExtendedKeyUsage(KeyPurposeId.id_kp_serverAuth));
+        }
+        ContentSigner signer = new JcaContentSignerBuilder(sigAlg).build(issuerKeys.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+    }
+
+    void write(Path dir) throws Exception {
+        Files.createDirectories(dir);
+        try (OutputStream out = Files.newOutputStream(dir.resolve("server-chain.p12"))) {
+            serverKeyStore.store(out, PASSWORD.toCharArray());
+        }
+        try (OutputStream out = Files.newOutputStream(dir.resolve("truststore.p12"))) {
+            trustStore.store(out, PASSWORD.toCharArray());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Usage: BenchPki [dir] [RSA|EC]
+        Path dir = Path.of(args.length >= 1 ? args[0] : "pki");
+        String keyAlg = args.length >= 2 ? args[1] : "RSA";
+        BenchPki pki = generate(keyAlg);
+        pki.write(dir);
+        for (X509Certificate cert : pki.chain()) {
+            LOGGER.info("{} (issuer {})", cert.getSubjectX500Principal(), cert.getIssuerX500Principal());
+        }
+        LOGGER.info("Wrote {} and {} (password {})", dir.resolve("server-chain.p12"),
+                dir.resolve("truststore.p12"), PASSWORD);
+    }
+}
@@ -0,0 +1,119 @@
+package bench;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+/**
+ * How the client checks the server certificate chain. Spec strings accepted by
+ * {@link #parse(String, KeyStore)}:
+ * <ul>
+ *   <li>{@code off} — trust every chain (no validation cost; the historical default)</li>
+ *   <li>{@code pkix} — PKIX path validation against the trust anchors plus HTTPS hostname
+ *       verification, on every handshake</li>
+ *   <li>{@code cached[:maxEntries]} — {@code pkix} behind a {@link ValidatedChainCache}</li>
+ * </ul>
+ */
+final class ChainValidation {
+
+    static final int DEFAULT_CACHE_SIZE = 1024;
+    static final String[] ALL = {"off", "pkix", "cached"};
+
+    private final String kind;
+    private final int cacheSize;
+    private final TrustManager[] trustManagers;
+    private final ValidatedChainCache cache;
+
+    private ChainValidation(String kind, KeyStore trustAnchors, int cacheSize) throws GeneralSecurityException {
+        this.kind = kind;
+        this.cacheSize = cacheSize;
+        if (trustAnchors == null) {
+            this.cache = null;
+            this.trustManagers = new TrustManager[]{TRUST_ALL};
+            return;
+        }
+        X509ExtendedTrustManager pkix = pkixTrustManager(trustAnchors);
+        this.cache = "cached".equals(kind) ? new ValidatedChainCache(pkix, cacheSize) : null;
+        this.trustManagers = new TrustManager[]{cache != null ? cache : pkix};
+    }
+
+    static ChainValidation off() {
+        try {
+            return new ChainValidation("off", null, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // unreachable: no trust store to load
+        }
+    }
+
+    static ChainValidation pkix(KeyStore trustAnchors) throws GeneralSecurityException {
+        return new ChainValidation("pkix", trustAnchors, 0);
+    }
+
+    static ChainValidation cached(KeyStore trustAnchors, int maxEntries) throws GeneralSecurityException {
+        return new ChainValidation("cached", trustAnchors, maxEntries);
+    }
+
+    static ChainValidation parse(String spec, KeyStore trustAnchors) throws GeneralSecurityException {
+        String normalized = spec.trim().toLowerCase();
+        if ("off".equals(normalized)) {
+            return off();
+        }
+        if (trustAnchors == null) {
+            throw new IllegalArgumentException("Chain validation '" + spec + "' needs a trust store");
+        }
+        if ("pkix".equals(normalized)) {
+            return pkix(trustAnchors);
+        }
+        if (normalized.equals("cached") || normalized.startsWith("cached:")) {
+            int size = normalized.length() > "cached:".length()
+                    ? Integer.parseInt(normalized.substring("cached:".length())) : DEFAULT_CACHE_SIZE;
+            return cached(trustAnchors, size);
+        }
+        throw new IllegalArgumentException("Unknown chain validation: " + spec);
+    }
+
+    boolean enabled() {
+        return !"off".equals(kind);
+    }
+
+    /**
+     * Trust managers for an SSLContext. The same instances are returned on every call, so every
+     * context built from this validation shares one {@link #cache()}.
+     */
+    TrustManager[] trustManagers() {
+        return trustManagers.clone();
+    }
+
+    /** The chain cache shared by every context using this validation, or null when not caching. */
+    ValidatedChainCache cache() {
+        return cache;
+    }
+
+    private static X509ExtendedTrustManager pkixTrustManager(KeyStore trustAnchors) throws GeneralSecurityException {
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance("PKIX");
+        tmf.init(trustAnchors);
+        for (TrustManager tm : tmf.getTrustManagers()) {
+            if (tm instanceof X509ExtendedTrustManager) {
+                return (X509ExtendedTrustManager) tm;
+            }
+        }
+        throw new IllegalStateException("No X509ExtendedTrustManager from " + tmf.getProvider());
+    }
+
+    private static final X509TrustManager TRUST_ALL = new X509TrustManager() {
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+        public void checkClientTrusted(X509Certificate[] certs, String s) {}
+        public void checkServerTrusted(X509Certificate[] certs, String s) {}
+    };
+
+    @Override
+    public String toString() {
+        return "cached".equals(kind) ? "cached:" + cacheSize : kind;
+    }
+}
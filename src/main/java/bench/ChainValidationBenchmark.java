@@ -0,0 +1,154 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client-side certificate validation cost on top of the key exchange.
+ *
+ * <p>A fresh {@link BenchPki} hierarchy is generated and an in-process server presents the full
+ * leaf → intermediate → root chain. The same client workload then runs with validation off
+ * (trust-all), PKIX on every handshake, and PKIX behind a {@link ValidatedChainCache}. Session
+ * resumption is disabled so every handshake carries and checks the certificate chain.
+ */
+public class ChainValidationBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChainValidationBenchmark.class);
+    private static final int WARMUP_HANDSHAKES = 100;
+
+    public static void main(String[] args) throws Exception {
+        // Usage: ChainValidationBenchmark [runs] [--modes=classical,hybrid] [--key-alg=RSA|EC] [--cache-size=1024]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int runs = positional.isEmpty() ? 500 : Integer.parseInt(positional.get(0));
+        String[] modes = options.containsKey("modes") ? options.get("modes").split(",") : GroupModes.SERVER_MODES;
+        String keyAlg = options.getOrDefault("key-alg", "RSA").toUpperCase();
+        int cacheSize = Integer.parseInt(options.getOrDefault("cache-size",
+                String.valueOf(ChainValidation.DEFAULT_CACHE_SIZE)));
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    CERTIFICATE CHAIN VALIDATION");
+        LOGGER.info("===========================================");
+        BenchPki pki = BenchPki.generate(keyAlg);
+        LOGGER.info("Chain: {} certificates, {} keys; runs per cell: {}, cache size: {}",
+                pki.chain().length, keyAlg, runs, cacheSize);
+
+        List<Row> rows = new ArrayList<>();
+        for (String mode : modes) {
+            String[] groups = GroupModes.supportedOnly(GroupModes.forMode(mode));
+            if (groups.length == 0) {
+                LOGGER.warn("Skipping mode {}: no supported named groups in this JVM", mode);
+                continue;
+            }
+            HybridTlsServer server = new HybridTlsServer(0, groups);
+            server.setKeyStore(pki.serverKeyStore(), BenchPki.PASSWORD.toCharArray());
+            Thread serverThread = server.startInBackground("chain-server-" + mode);
+            try {
+                for (String spec : ChainValidation.ALL) {
+                    ChainValidation validation = ChainValidation.parse(
+                            "cached".equals(spec) ? "cached:" + cacheSize : spec, pki.trustStore());
+                    rows.add(measure(mode, groups, server.getPort(), validation, runs));
+                }
+            } finally {
+                server.stop();
+                serverThread.join(1000);
+            }
+        }
+
+        printRows(rows);
+    }
+
+    private static Row measure(String mode, String[] groups, int port, ChainValidation validation,
+                               int runs) throws Exception {
+        HybridTlsClient client = new HybridTlsClient("localhost", port, ClientMix.of(groups), null);
+        client.setChainValidation(validation);
+        client.setSessionResumption(false);
+        client.setHandshakeTap(true);
+        for (int i = 0; i < WARMUP_HANDSHAKES; i++) {
+            client.runSingleConnection();
+        }
+
+        Row row = new Row(mode, validation.toString());
+        List<Double> times = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            try {
+                HybridTlsClient.Handshake h = client.runSingleConnection();
+                times.add(h.millis);
+                row.group = h.group;
+                if (h.resumed) {
+                    row.resumed++;
+                }
+            } catch (Exception e) {
+                row.failures++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        Collections.sort(times);
+        if (!times.isEmpty()) {
+            double sum = 0;
+            for (double t : times) sum += t;
+            row.mean = sum / times.size();
+            row.median = HybridTlsClient.percentile(times, 50);
+            row.p99 = HybridTlsClient.percentile(times, 99);
+            row.throughput = times.size() / seconds;
+        }
+        if (validation.cache() != null) {
+            row.cacheHits = validation.cache().hits();
+            row.cacheMisses = validation.cache().misses();
+        }
+        LOGGER.info("{} / {}: median {} ms", mode, validation, String.format("%.3f", row.median));
+        return row;
+    }
+
+    private static void printRows(List<Row> rows) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-10s %-16s %-12s %-10s %-10s %-10s %-10s %-12s %-14s",
+                "Mode", "Group", "Validation", "Mean", "Median", "p99", "HS/s", "vs off", "Cache hit/miss"));
+        LOGGER.info("-".repeat(110));
+        List<String> csv = new ArrayList<>();
+        double off = 0;
+        for (Row r : rows) {
+            if ("off".equals(r.validation)) {
+                off = r.median;
+            }
+            String cache = r.validation.startsWith("cached") ? r.cacheHits + "/" + r.cacheMisses : "-";
+            LOGGER.info(String.format("%-10s %-16s %-12s %-10.3f %-10.3f %-10.3f %-10.1f %+-12.3f %-14s",
+                    r.mode, r.group, r.validation, r.mean, r.median, r.p99, r.throughput, r.median - off, cache));
+            csv.add(String.format("%s,%s,%s,%d,%d,%.3f,%.3f,%.3f,%.2f,%.3f,%d,%d",
+                    r.mode, r.group, r.validation, r.failures, r.resumed, r.mean, r.median, r.p99, r.throughput,
+                    r.median - off, r.cacheHits, r.cacheMisses));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("mode,group,validation,fail,resumed,mean_ms,median_ms,p99_ms,throughput,median_delta_vs_off_ms,cache_hits,cache_misses");
+        for (String line : csv) {
+            LOGGER.info(line);
+        }
+    }
+
+    static class Row {
+        final String mode;
+        final String validation;
+        String group;
+        int failures;
+        int resumed;
+        double mean;
+        double median;
+        double p99;
+        double throughput;
+        long cacheHits;
+        long cacheMisses;
+
+        Row(String mode, String validation) {
+            this.mode = mode;
+            this.validation = validation;
+        }
+    }
+}
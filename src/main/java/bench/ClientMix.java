@@ -0,0 +1,107 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted population of client profiles. Each connection draws one profile and offers that
+ * profile's named groups, so a single client run can emulate e.g. 70% classical-only, 25% hybrid
+ * and 5% PQC-only clients hitting the same server.
+ */
+final class ClientMix {
+
+    private final List<Profile> profiles;
+    private final int totalWeight;
+
+    private ClientMix(List<Profile> profiles) {
+        this.profiles = Collections.unmodifiableList(profiles);
+        int sum = 0;
+        for (Profile p : profiles) sum += p.weight;
+        this.totalWeight = sum;
+    }
+
+    /** A mix with a single profile that always offers {@code namedGroups} (may be null for JSSE defaults). */
+    static ClientMix of(String[] namedGroups) {
+        List<Profile> list = new ArrayList<>();
+        list.add(new Profile("default", namedGroups, 1));
+        return new ClientMix(list);
+    }
+
+    /**
+     * Parse {@code mode:weight[,mode:weight...]}, e.g. {@code classical:70,hybrid:25,pqc:5}. Modes are
+     * resolved through {@link GroupModes#forMode(String)}; weights are relative and need not add up to 100.
+     */
+    static ClientMix parse(String spec) {
+        List<Profile> list = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry (expected mode:weight): " + part);
+            }
+            String mode = kv[0].trim().toLowerCase();
+            int weight;
+            try {
+                weight = Integer.parseInt(kv[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight for mode " + mode + ": " + kv[1].trim());
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for mode " + mode);
+            }
+            for (Profile p : list) {
+                if (p.mode.equals(mode)) {
+                    throw new IllegalArgumentException("Mode listed twice in mix: " + mode);
+                }
+            }
+            if (weight > 0) {
+                list.add(new Profile(mode, GroupModes.forMode(mode), weight));
+            }
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no profile with a positive weight: " + spec);
+        }
+        return new ClientMix(list);
+    }
+
+    Profile pick() {
+        if (profiles.size() == 1) {
+            return profiles.get(0);
+        }
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Profile p : profiles) {
+            r -= p.weight;
+            if (r < 0) {
+                return p;
+            }
+        }
+        return profiles.get(profiles.size() - 1);
+    }
+
+    List<Profile> profiles() {
+        return profiles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Profile p : profiles) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(String.format("%s %.0f%%", p.mode, 100.0 * p.weight / totalWeight));
+        }
+        return sb.toString();
+    }
+
+    static final class Profile {
+        final String mode;
+        final String[] namedGroups;
+        final int weight;
+
+        Profile(String mode, String[] namedGroups, int weight) {
+            this.mode = mode;
+            this.namedGroups = namedGroups;
+            this.weight = weight;
+        }
+    }
+}
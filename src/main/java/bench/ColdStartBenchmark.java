@@ -0,0 +1,255 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures server cold start: every (mode, pre-warm) cell launches {@link HybridTlsServer} in a fresh
+ * JVM and drives handshakes at it from this (already warm) JVM.
+ *
+ * <p>Reported per cell: time from process spawn to "Server listening", time from spawn to the first
+ * completed handshake, the first N server-side handshake latencies (parsed from the child's
+ * {@code Handshake time (ms)} log lines) and the steady-state median measured after them. The cold
+ * penalty is the first handshake minus that steady-state median; comparing it with and without
+ * {@code --prewarm} shows how much of the penalty the pre-warm phase removes.
+ *
+ * <p>Before any cell, the client is warmed up in this JVM against every measured mode's groups, so
+ * the first cell of a mode does not also pay for the client's own class loading and JIT. Session
+ * resumption is off, so the first handshake and the steady state are both full handshakes.
+ */
+public class ColdStartBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColdStartBenchmark.class);
+    private static final Pattern HANDSHAKE_LINE = Pattern.compile("Handshake time \\(ms\\): ([0-9.]+)");
+    private static final int CLIENT_WARMUP_HANDSHAKES = 200;
+
+    public static void main(String[] args) throws Exception {
+        // Usage: ColdStartBenchmark [firstN] [steadyRuns] [--modes=classical,hybrid,pqc] [--prewarm-rounds=n]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int firstN = positional.size() >= 1 ? Integer.parseInt(positional.get(0)) : 20;
+        int steadyRuns = positional.size() >= 2 ? Integer.parseInt(positional.get(1)) : 200;
+        String[] modes = options.containsKey("modes") ? options.get("modes").split(",") : GroupModes.SERVER_MODES;
+        int prewarmRounds = Integer.parseInt(options.getOrDefault("prewarm-rounds",
+                String.valueOf(HybridTlsServer.DEFAULT_PREWARM_ROUNDS)));
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    SERVER COLD START");
+        LOGGER.info("===========================================");
+        LOGGER.info("First handshakes tracked: {}, steady-state handshakes: {}, pre-warm rounds: {}",
+                firstN, steadyRuns, prewarmRounds);
+
+        Map<String, String[]> modeGroups = new LinkedHashMap<>();
+        for (String mode : modes) {
+            String[] groups = GroupModes.supportedOnly(GroupModes.forMode(mode));
+            if (groups.length == 0) {
+                LOGGER.warn("Skipping mode {}: no supported named groups in this JVM", mode);
+                continue;
+            }
+            modeGroups.put(mode, groups);
+        }
+        for (String[] groups : modeGroups.values()) {
+            warmUpClient(groups);
+        }
+
+        List<Cell> cells = new ArrayList<>();
+        for (Map.Entry<String, String[]> e : modeGroups.entrySet()) {
+            cells.add(runFreshServer(e.getKey(), e.getValue(), 0, firstN, steadyRuns));
+            cells.add(runFreshServer(e.getKey(), e.getValue(), prewarmRounds, firstN, steadyRuns));
+        }
+
+        printCells(cells, firstN);
+    }
+
+    /** JIT the client side for {@code groups} in this JVM first so the fresh server JVM is the only cold party. */
+    private static void warmUpClient(String[] groups) throws Exception {
+        HybridTlsServer server = new HybridTlsServer(0, groups);
+        Thread t = server.startInBackground("coldstart-client-warmup-" + groups[0]);
+        try {
+            HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), groups);
+            client.setSessionResumption(false);
+            for (int i = 0; i < CLIENT_WARMUP_HANDSHAKES; i++) {
+                client.runSingleConnection();
+            }
+        } finally {
+            server.stop();
+            t.join(1000);
+        }
+    }
+
+    private static Cell runFreshServer(String mode, String[] groups, int prewarmRounds, int firstN,
+                                       int steadyRuns) throws Exception {
+        int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        List<String> cmd = new ArrayList<>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                HybridTlsServer.class.getName(), mode, String.valueOf(port)));
+        if (prewarmRounds > 0) {
+            cmd.add("--prewarm=" + prewarmRounds);
+        }
+
+        Cell cell = new Cell(mode, prewarmRounds > 0);
+        CountDownLatch listening = new CountDownLatch(1);
+        long spawn = System.nanoTime();
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.contains("Server listening on port " + port)) {
+                        cell.timeToListenMs = (System.nanoTime() - spawn) / 1_000_000.0;
+                        listening.countDown();
+                    }
+                    Matcher m = HANDSHAKE_LINE.matcher(line);
+                    if (m.find()) {
+                        synchronized (cell.serverTimes) {
+                            cell.serverTimes.add(Double.parseDouble(m.group(1)));
+                        }
+                    }
+                    LOGGER.debug("[{}] {}", mode, line);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Child output reader stopped: {}", e.toString());
+            }
+        }, "coldstart-reader-" + mode);
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            if (!listening.await(2, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Server in mode " + mode + " did not start listening");
+            }
+            HybridTlsClient client = new HybridTlsClient("localhost", port, groups);
+            // resumed handshakes skip the certificate and signature, which would shrink the steady median
+            client.setSessionResumption(false);
+            int total = firstN + steadyRuns;
+            for (int i = 0; i < total; i++) {
+                try {
+                    cell.clientTimes.add(client.runSingleConnection().millis);
+                    if (cell.timeToFirstHandshakeMs == 0) {
+                        cell.timeToFirstHandshakeMs = (System.nanoTime() - spawn) / 1_000_000.0;
+                    }
+                } catch (Exception e) {
+                    cell.failures++;
+                }
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            reader.join(5000);
+        }
+        LOGGER.info("{} (pre-warm {}): listening after {} ms, first handshake done after {} ms (client-side {} ms)",
+                mode, cell.prewarm ? "on" : "off", String.format("%.1f", cell.timeToListenMs),
+                String.format("%.1f", cell.timeToFirstHandshakeMs),
+                cell.clientTimes.isEmpty() ? "-" : String.format("%.3f", cell.clientTimes.get(0)));
+        return cell;
+    }
+
+    private static void printCells(List<Cell> cells, int firstN) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-10s %-8s %-10s %-12s %-10s %-12s %-10s %-12s",
+                "Mode", "Prewarm", "Listen", "First HS at", "First HS", "Mean firstN", "Steady", "Cold penalty"));
+        LOGGER.info("-".repeat(92));
+        for (Cell c : cells) {
+            if (c.serverTimes.isEmpty()) {
+                LOGGER.info(String.format("%-10s %-8s (no server handshakes recorded, %d failures)",
+                        c.mode, c.prewarm ? "on" : "off", c.failures));
+                continue;
+            }
+            LOGGER.info(String.format("%-10s %-8s %-10.1f %-12.1f %-10.3f %-12.3f %-10.3f %-12.3f",
+                    c.mode, c.prewarm ? "on" : "off", c.timeToListenMs, c.timeToFirstHandshakeMs,
+                    c.serverTimes.get(0), c.meanFirst(firstN), c.steadyMedian(firstN), c.coldPenalty(firstN)));
+        }
+
+        LOGGER.info("");
+        for (Cell c : cells) {
+            List<Double> first = c.serverTimes.subList(0, Math.min(firstN, c.serverTimes.size()));
+            StringBuilder sb = new StringBuilder();
+            for (double t : first) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(String.format("%.2f", t));
+            }
+            LOGGER.info("{} (pre-warm {}) first {} server handshakes (ms): {}", c.mode,
+                    c.prewarm ? "on" : "off", first.size(), sb);
+        }
+
+        LOGGER.info("");
+        for (int i = 0; i + 1 < cells.size(); i += 2) {
+            Cell cold = cells.get(i);
+            Cell warm = cells.get(i + 1);
+            if (cold.serverTimes.isEmpty() || warm.serverTimes.isEmpty()) {
+                continue;
+            }
+            double penalty = cold.coldPenalty(firstN);
+            double removed = penalty > 0 ? (penalty - warm.coldPenalty(firstN)) / penalty * 100 : 0;
+            LOGGER.info(String.format("%s: pre-warm removes %.1f%% of the %.3f ms cold penalty at a cost of %+.1f ms time-to-listen",
+                    cold.mode, removed, penalty, warm.timeToListenMs - cold.timeToListenMs));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("mode,prewarm,time_to_listen_ms,time_to_first_handshake_ms,first_hs_ms,mean_first_n_ms,steady_median_ms,cold_penalty_ms");
+        for (Cell c : cells) {
+            if (c.serverTimes.isEmpty()) {
+                continue;
+            }
+            LOGGER.info(String.format("%s,%s,%.1f,%.1f,%.3f,%.3f,%.3f,%.3f",
+                    c.mode, c.prewarm ? "on" : "off", c.timeToListenMs, c.timeToFirstHandshakeMs,
+                    c.serverTimes.get(0), c.meanFirst(firstN), c.steadyMedian(firstN), c.coldPenalty(firstN)));
+        }
+    }
+
+    static class Cell {
+        final String mode;
+        final boolean prewarm;
+        final List<Double> serverTimes = new ArrayList<>();
+        final List<Double> clientTimes = new ArrayList<>();
+        volatile double timeToListenMs;
+        double timeToFirstHandshakeMs;
+        int failures;
+
+        Cell(String mode, boolean prewarm) {
+            this.mode = mode;
+            this.prewarm = prewarm;
+        }
+
+        double meanFirst(int n) {
+            List<Double> first = serverTimes.subList(0, Math.min(n, serverTimes.size()));
+            double sum = 0;
+            for (double t : first) sum += t;
+            return sum / first.size();
+        }
+
+        /** Median of the server handshakes after the first {@code n}; falls back to all of them. */
+        double steadyMedian(int n) {
+            List<Double> steady = new ArrayList<>(serverTimes.size() > n
+                    ? serverTimes.subList(n, serverTimes.size()) : serverTimes);
+            Collections.sort(steady);
+            return HybridTlsClient.percentile(steady, 50);
+        }
+
+        double coldPenalty(int n) {
+            return serverTimes.get(0) - steadyMedian(n);
+        }
+    }
+}
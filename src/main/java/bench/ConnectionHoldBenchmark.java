@@ -0,0 +1,216 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Memory cost of idle established TLS connections per named group.
+ *
+ * <p>For every mode a fresh {@link HybridTlsServer} JVM is started with {@code --hold}, so it keeps
+ * each connection open after the echo and logs a {@code HOLD_SAMPLE} (heap after GC, direct buffers,
+ * non-heap, RSS) every {@code sampleEvery} accepted connections. This JVM then opens N connections
+ * and keeps them open until the last sample arrives. Bytes per idle connection are the least-squares
+ * slope of each metric against the live connection count, which cancels the fixed cost of the
+ * server itself. In hold mode the server neither taps handshakes nor records per-handshake stats,
+ * so the negotiated group is taken from this side's handshakes.
+ *
+ * <p>Both processes need a file descriptor limit above N ({@code ulimit -n}); pass {@code -Xmx} for
+ * the server through {@code --jvm-args} when holding tens of thousands of connections.
+ */
+public class ConnectionHoldBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionHoldBenchmark.class);
+    private static final Pattern SAMPLE_LINE = Pattern.compile(
+            "HOLD_SAMPLE connections=(\\d+) accepted=(\\d+) heap=(-?\\d+) nonheap=(-?\\d+) direct=(-?\\d+) rss=(-?\\d+) label=(.*)");
+
+    public static void main(String[] args) throws Exception {
+        // Usage: ConnectionHoldBenchmark [connections] [--modes=classical,hybrid,pqc] [--sample-every=1000]
+        //        [--concurrency=8] [--jvm-args="-Xmx4g"]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int connections = positional.isEmpty() ? 10_000 : Integer.parseInt(positional.get(0));
+        String[] modes = options.containsKey("modes") ? options.get("modes").split(",") : GroupModes.SERVER_MODES;
+        int sampleEvery = Integer.parseInt(options.getOrDefault("sample-every",
+                String.valueOf(HybridTlsServer.DEFAULT_HOLD_SAMPLE_EVERY)));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        String jvmArgs = options.getOrDefault("jvm-args", "").trim();
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    IDLE CONNECTION MEMORY");
+        LOGGER.info("===========================================");
+        LOGGER.info("Connections: {}, sample every: {}, client threads: {}, server JVM args: {}",
+                connections, sampleEvery, concurrency, jvmArgs.isEmpty() ? "(none)" : jvmArgs);
+
+        List<Cell> cells = new ArrayList<>();
+        for (String mode : modes) {
+            String[] groups = GroupModes.supportedOnly(GroupModes.forMode(mode));
+            if (groups.length == 0) {
+                LOGGER.warn("Skipping mode {}: no supported named groups in this JVM", mode);
+                continue;
+            }
+            cells.add(runFreshServer(mode, groups, connections, sampleEvery, concurrency, jvmArgs));
+        }
+
+        printCells(cells);
+    }
+
+    private static Cell runFreshServer(String mode, String[] groups, int connections, int sampleEvery,
+                                       int concurrency, String jvmArgs) throws Exception {
+        int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!jvmArgs.isEmpty()) {
+            cmd.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        }
+        cmd.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                HybridTlsServer.class.getName(), mode, String.valueOf(port),
+                "--hold=" + sampleEvery, "--workers=" + concurrency));
+
+        Cell cell = new Cell(mode);
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    Matcher m = SAMPLE_LINE.matcher(line);
+                    if (m.find()) {
+                        cell.add(parseSample(m));
+                    }
+                    LOGGER.debug("[{}] {}", mode, line);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Child output reader stopped: {}", e.toString());
+            }
+        }, "hold-reader-" + mode);
+        reader.setDaemon(true);
+        reader.start();
+
+        List<SSLSocket> held = new ArrayList<>();
+        try {
+            // the zero-connection sample is taken right after "Server listening"
+            if (!cell.awaitSample(0, TimeUnit.MINUTES.toMillis(2))) {
+                throw new IllegalStateException("Server in mode " + mode + " did not start listening");
+            }
+            HybridTlsClient client = new HybridTlsClient("localhost", port, groups);
+            // the server does not observe groups in hold mode, so the negotiated ones are tallied here
+            client.setHandshakeTap(true);
+            long start = System.nanoTime();
+            held = client.openAndHold(connections, concurrency, cell.negotiated);
+            cell.rampSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            cell.failures = connections - held.size();
+
+            int lastSample = held.size() / sampleEvery * sampleEvery;
+            if (!cell.awaitSample(lastSample, TimeUnit.MINUTES.toMillis(5))) {
+                LOGGER.warn("{}: server did not report a sample at {} connections", mode, lastSample);
+            }
+        } finally {
+            HybridTlsClient.closeAll(held);
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            reader.join(5000);
+        }
+        LOGGER.info("{}: {} connections held after {} s, {} samples", mode, connections - cell.failures,
+                String.format("%.1f", cell.rampSeconds), cell.samples().size());
+        return cell;
+    }
+
+    private static MemorySampler.Sample parseSample(Matcher m) {
+        MemorySampler.Sample s = new MemorySampler.Sample();
+        s.connections = Integer.parseInt(m.group(1));
+        s.accepted = Integer.parseInt(m.group(2));
+        s.heap = Long.parseLong(m.group(3));
+        s.nonHeap = Long.parseLong(m.group(4));
+        s.direct = Long.parseLong(m.group(5));
+        s.rss = Long.parseLong(m.group(6));
+        s.label = m.group(7).trim();
+        return s;
+    }
+
+    private static void printCells(List<Cell> cells) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-10s %-16s %-8s %-8s %-14s %-14s %-14s %-14s",
+                "Mode", "Group", "Held", "Fail", "Heap B/conn", "Direct B/conn", "Non-heap B/c", "RSS B/conn"));
+        LOGGER.info("-".repeat(104));
+        List<String> csv = new ArrayList<>();
+        for (Cell c : cells) {
+            List<MemorySampler.Sample> samples = c.samples();
+            if (samples.size() < 2) {
+                LOGGER.info(String.format("%-10s (only %d memory samples, %d failures)", c.mode, samples.size(), c.failures));
+                continue;
+            }
+            MemorySampler.Sample last = samples.get(samples.size() - 1);
+            String group = c.negotiated.size() == 1 ? c.negotiated.keySet().iterator().next() : c.negotiated.toString();
+            double heap = MemorySampler.slope(samples, "heap");
+            double direct = MemorySampler.slope(samples, "direct");
+            double nonHeap = MemorySampler.slope(samples, "nonheap");
+            double rss = MemorySampler.slope(samples, "rss");
+            LOGGER.info(String.format("%-10s %-16s %-8d %-8d %-14.0f %-14.0f %-14.0f %-14.0f",
+                    c.mode, group, last.connections, c.failures, heap, direct, nonHeap, rss));
+            csv.add(String.format("%s,%s,%d,%d,%.1f,%.0f,%.0f,%.0f,%.0f",
+                    c.mode, group, last.connections, c.failures, c.rampSeconds, heap, direct, nonHeap, rss));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("mode,group,connections,fail,ramp_seconds,heap_bytes_per_conn,direct_bytes_per_conn,nonheap_bytes_per_conn,rss_bytes_per_conn");
+        for (String line : csv) {
+            LOGGER.info(line);
+        }
+    }
+
+    static class Cell {
+        final String mode;
+        // negotiated group -> connections, as observed by the client
+        final Map<String, Integer> negotiated = new ConcurrentSkipListMap<>();
+        private final List<MemorySampler.Sample> samples = new ArrayList<>();
+        double rampSeconds;
+        int failures;
+        private int maxConnections = -1;
+
+        Cell(String mode) {
+            this.mode = mode;
+        }
+
+        synchronized void add(MemorySampler.Sample s) {
+            samples.add(s);
+            maxConnections = Math.max(maxConnections, s.accepted);
+            notifyAll();
+        }
+
+        synchronized List<MemorySampler.Sample> samples() {
+            return new ArrayList<>(samples);
+        }
+
+        /** Wait until the server has logged a sample after accepting {@code connections} or more. */
+        synchronized boolean awaitSample(int connections, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (maxConnections < connections) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Maps the logical benchmark mode names to TLS named-group strings.
+ *
+ * <p>Server modes ({@code classical}, {@code hybrid}, {@code pqc}) list the groups a server accepts.
+ * The key-share modes ({@code classical-first}, {@code hybrid-first}, {@code pqc-first}) advertise
+ * every group but put one of them first. JSSE generates a key share only for the most preferred
+ * group of each family (e.g. one hybrid/KEM share plus one x25519 share), so the leading group is
+ * guaranteed a share in the initial ClientHello and lower-ranked groups of the same family are only
+ * advertised in {@code supported_groups}. {@link HandshakeTap} reports the shares actually sent.
+ */
+final class GroupModes {
+
+    static final String X25519 = "x25519";
+    static final String HYBRID = "X25519MLKEM768";
+    static final String PQC = "MLKEM768";
+
+    /** Server modes, in the order the matrix benchmarks iterate them. */
+    static final String[] SERVER_MODES = {"classical", "hybrid", "pqc"};
+
+    /** Client key-share modes, in the order the matrix benchmarks iterate them. */
+    static final String[] KEY_SHARE_MODES = {"classical-first", "hybrid-first", "pqc-first"};
+
+    private GroupModes() {
+    }
+
+    static String[] forMode(String mode) {
+        switch (mode.toLowerCase()) {
+            case "classical":
+                return new String[]{X25519};
+            case "hybrid":
+                return new String[]{HYBRID, X25519};
+            case "pqc":
+            case "pqc-only":
+                return new String[]{PQC};
+            case "classical-first":
+                return new String[]{X25519, HYBRID, PQC};
+            case "hybrid-first":
+                return new String[]{HYBRID, X25519, PQC};
+            case "pqc-first":
+                return new String[]{PQC, HYBRID, X25519};
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    /**
+     * Drop the groups the running JVM's default JSSE provider does not implement (e.g. ML-KEM groups
+     * before JDK 24), keeping the original order. Returns an empty array if none are supported. See
+     * {@link JsseProvider#supportedOnly} for other providers.
+     */
+    static String[] supportedOnly(String[] groups) throws NoSuchAlgorithmException {
+        return JsseProvider.defaultProvider().supportedOnly(groups);
+    }
+
+    /**
+     * Return {@code groups} reordered so that {@code preferred} comes first. The input is returned
+     * unchanged when {@code preferred} is null or not one of the offered groups.
+     */
+    static String[] withPreferred(String[] groups, String preferred) {
+        if (preferred == null || groups == null || !Arrays.asList(groups).contains(preferred)) {
+            return groups;
+        }
+        Set<String> ordered = new LinkedHashSet<>();
+        ordered.add(preferred);
+        ordered.addAll(Arrays.asList(groups));
+        return ordered.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Handshake latencies bucketed by negotiated named group. Shared by the client and the server so
+ * both sides print the same per-group breakdown. Each group keeps a {@link LatencyHistogram}, so a
+ * server that runs until Ctrl-C uses constant memory however many handshakes it handles.
+ */
+final class GroupStats {
+
+    private final Map<String, LatencyHistogram> byGroup = new TreeMap<>();
+    private long firstNanos;
+    private long lastNanos;
+
+    synchronized void record(String group, double millis) {
+        long now = System.nanoTime();
+        if (byGroup.isEmpty()) {
+            firstNanos = now - (long) (millis * 1_000_000);
+        }
+        lastNanos = now;
+        byGroup.computeIfAbsent(group != null ? group : "unknown", g -> new LatencyHistogram()).record(millis);
+    }
+
+    synchronized int total() {
+        long n = 0;
+        for (LatencyHistogram h : byGroup.values()) n += h.count();
+        return (int) n;
+    }
+
+    /** Log the breakdown using the span between the first and last recorded handshake as the window. */
+    void log(Logger logger) {
+        double window;
+        synchronized (this) {
+            window = (lastNanos - firstNanos) / 1_000_000_000.0;
+        }
+        log(logger, window);
+    }
+
+    void log(Logger logger, double windowSeconds) {
+        Map<String, LatencyHistogram> snapshot = new TreeMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, LatencyHistogram> e : byGroup.entrySet()) {
+                snapshot.put(e.getKey(), e.getValue().copy());
+            }
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        long total = 0;
+        for (LatencyHistogram h : snapshot.values()) total += h.count();
+
+        logger.info("");
+        logger.info("--- By Negotiated Group ---");
+        logger.info(String.format("  %-20s %-8s %-8s %-10s %-10s %-10s %-10s %-10s",
+                "Group", "Count", "Share%", "Mean", "Median", "p99", "Max", "Conn/s"));
+        List<String> csv = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> e : snapshot.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            double share = 100.0 * h.count() / total;
+            double throughput = windowSeconds > 0 ? h.count() / windowSeconds : 0;
+            logger.info(String.format("  %-20s %-8d %-8.1f %-10.3f %-10.3f %-10.3f %-10.3f %-10.2f",
+                    e.getKey(), h.count(), share, h.mean(), h.percentile(50), h.percentile(99), h.max(), throughput));
+            csv.add(String.format("%s,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.2f",
+                    e.getKey(), h.count(), share, h.mean(), h.percentile(50), h.percentile(99), h.max(), throughput));
+        }
+
+        logger.info("");
+        logger.info("GROUP_CSV_OUTPUT:");
+        logger.info("group,count,share_pct,mean_ms,median_ms,p99_ms,max_ms,throughput");
+        for (String line : csv) {
+            logger.info(line);
+        }
+    }
+}
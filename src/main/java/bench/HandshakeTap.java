@@ -0,0 +1,339 @@
+package bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Passive observer of the plaintext part of a TLS 1.3 handshake.
+ *
+ * <p>JSSE does not expose the negotiated named group or whether a HelloRetryRequest happened, so
+ * the tap parses the unencrypted ClientHello / ServerHello records as they cross the socket. It
+ * never modifies the byte stream and stops parsing as soon as the final ServerHello has been seen;
+ * after that both directions are plain pass-through.
+ */
+final class HandshakeTap {
+
+    private static final int RECORD_HANDSHAKE = 22;
+    private static final int MSG_CLIENT_HELLO = 1;
+    private static final int MSG_SERVER_HELLO = 2;
+    private static final int EXT_SUPPORTED_GROUPS = 0x000a;
+    private static final int EXT_PRE_SHARED_KEY = 0x0029;
+    private static final int EXT_KEY_SHARE = 0x0033;
+
+    /** ServerHello.random value that marks a HelloRetryRequest (RFC 8446, section 4.1.3). */
+    private static final byte[] HRR_RANDOM = {
+            (byte) 0xCF, (byte) 0x21, (byte) 0xAD, (byte) 0x74, (byte) 0xE5, (byte) 0x9A, (byte) 0x61, (byte) 0x11,
+            (byte) 0xBE, (byte) 0x1D, (byte) 0x8C, (byte) 0x02, (byte) 0x1E, (byte) 0x65, (byte) 0xB8, (byte) 0x91,
+            (byte) 0xC2, (byte) 0xA2, (byte) 0x11, (byte) 0x16, (byte) 0x7A, (byte) 0xBB, (byte) 0x8C, (byte) 0x5E,
+            (byte) 0x07, (byte) 0x9E, (byte) 0x09, (byte) 0xE2, (byte) 0xC8, (byte) 0xA8, (byte) 0x33, (byte) 0x9C
+    };
+
+    private volatile boolean complete;
+    private volatile boolean helloRetryRequested;
+    private volatile boolean resumed;
+    private volatile String negotiatedGroup;
+    private volatile List<String> initialKeyShares = Collections.emptyList();
+    private volatile List<String> advertisedGroups = Collections.emptyList();
+
+    /** Group selected by the final ServerHello, or null if the handshake has not got that far. */
+    String negotiatedGroup() {
+        return negotiatedGroup;
+    }
+
+    /** True if the server answered the first ClientHello with a HelloRetryRequest. */
+    boolean helloRetryRequested() {
+        return helloRetryRequested;
+    }
+
+    /** True if the final ServerHello accepted a pre-shared key, i.e. the session was resumed. */
+    boolean resumed() {
+        return resumed;
+    }
+
+    /** Groups that carried a key share in the first ClientHello. */
+    List<String> initialKeyShares() {
+        return initialKeyShares;
+    }
+
+    /** Groups listed in the first ClientHello's supported_groups extension. */
+    List<String> advertisedGroups() {
+        return advertisedGroups;
+    }
+
+    InputStream wrap(InputStream in) {
+        final RecordScanner scanner = new RecordScanner();
+        final byte[] single = new byte[1];
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0 && !complete) {
+                    single[0] = (byte) b;
+                    scanner.feed(single, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0 && !complete) {
+                    scanner.feed(b, off, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    OutputStream wrap(OutputStream out) {
+        final RecordScanner scanner = new RecordScanner();
+        final byte[] single = new byte[1];
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                if (!complete) {
+                    single[0] = (byte) b;
+                    scanner.feed(single, 0, 1);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                if (!complete) {
+                    scanner.feed(b, off, len);
+                }
+            }
+        };
+    }
+
+    static String groupName(int code) {
+        switch (code) {
+            case 0x0017: return "secp256r1";
+            case 0x0018: return "secp384r1";
+            case 0x0019: return "secp521r1";
+            case 0x001d: return "x25519";
+            case 0x001e: return "x448";
+            case 0x0100: return "ffdhe2048";
+            case 0x0101: return "ffdhe3072";
+            case 0x0102: return "ffdhe4096";
+            case 0x0103: return "ffdhe6144";
+            case 0x0104: return "ffdhe8192";
+            case 0x0200: return "MLKEM512";
+            case 0x0201: return "MLKEM768";
+            case 0x0202: return "MLKEM1024";
+            case 0x11eb: return "SecP256r1MLKEM768";
+            case 0x11ec: return "X25519MLKEM768";
+            case 0x11ed: return "SecP384r1MLKEM1024";
+            default: return String.format("0x%04x", code);
+        }
+    }
+
+    private void onHandshakeMessage(int type, byte[] buf, int off, int len) {
+        if (type == MSG_CLIENT_HELLO) {
+            onClientHello(buf, off, len);
+        } else if (type == MSG_SERVER_HELLO) {
+            onServerHello(buf, off, len);
+        }
+    }
+
+    private void onClientHello(byte[] buf, int off, int len) {
+        if (!advertisedGroups.isEmpty() || !initialKeyShares.isEmpty()) {
+            // only the first ClientHello describes the client's initial offer
+            return;
+        }
+        int end = off + len;
+        int pos = off + 2 + 32;                       // legacy_version, random
+        pos += 1 + (buf[pos] & 0xff);                 // legacy_session_id
+        pos += 2 + u16(buf, pos);                     // cipher_suites
+        pos += 1 + (buf[pos] & 0xff);                 // legacy_compression_methods
+        if (pos + 2 > end) {
+            return;
+        }
+        int extEnd = Math.min(end, pos + 2 + u16(buf, pos));
+        pos += 2;
+        List<String> advertised = new ArrayList<>();
+        List<String> shares = new ArrayList<>();
+        while (pos + 4 <= extEnd) {
+            int extType = u16(buf, pos);
+            int extLen = u16(buf, pos + 2);
+            int data = pos + 4;
+            if (extType == EXT_SUPPORTED_GROUPS) {
+                int listEnd = data + 2 + u16(buf, data);
+                for (int p = data + 2; p + 2 <= listEnd; p += 2) {
+                    advertised.add(groupName(u16(buf, p)));
+                }
+            } else if (extType == EXT_KEY_SHARE) {
+                int listEnd = data + 2 + u16(buf, data);
+                int p = data + 2;
+                while (p + 4 <= listEnd) {
+                    shares.add(groupName(u16(buf, p)));
+                    p += 4 + u16(buf, p + 2);
+                }
+            }
+            pos = data + extLen;
+        }
+        advertisedGroups = Collections.unmodifiableList(advertised);
+        initialKeyShares = Collections.unmodifiableList(shares);
+    }
+
+    private void onServerHello(byte[] buf, int off, int len) {
+        int end = off + len;
+        int pos = off + 2;                            // legacy_version
+        boolean retry = Arrays.equals(buf, pos, pos + 32, HRR_RANDOM, 0, 32);
+        pos += 32;
+        pos += 1 + (buf[pos] & 0xff);                 // legacy_session_id_echo
+        pos += 2 + 1;                                 // cipher_suite, legacy_compression_method
+        String group = null;
+        boolean psk = false;
+        if (pos + 2 <= end) {
+            int extEnd = Math.min(end, pos + 2 + u16(buf, pos));
+            pos += 2;
+            while (pos + 4 <= extEnd) {
+                int extType = u16(buf, pos);
+                int extLen = u16(buf, pos + 2);
+                if (extType == EXT_KEY_SHARE && extLen >= 2) {
+                    // selected_group for HRR, KeyShareEntry.group for ServerHello
+                    group = groupName(u16(buf, pos + 4));
+                } else if (extType == EXT_PRE_SHARED_KEY) {
+                    psk = true;
+                }
+                pos += 4 + extLen;
+            }
+        }
+        if (retry) {
+            helloRetryRequested = true;
+        } else {
+            negotiatedGroup = group;
+            resumed = psk;
+            complete = true;
+        }
+    }
+
+    private static int u16(byte[] b, int pos) {
+        return ((b[pos] & 0xff) << 8) | (b[pos + 1] & 0xff);
+    }
+
+    private static int u24(byte[] b, int pos) {
+        return ((b[pos] & 0xff) << 16) | ((b[pos + 1] & 0xff) << 8) | (b[pos + 2] & 0xff);
+    }
+
+    /**
+     * Reassembles TLS records from one direction of the stream and hands complete plaintext
+     * handshake messages to the tap. Each direction is driven by a single reader or writer thread.
+     */
+    private final class RecordScanner {
+        private final byte[] header = new byte[5];
+        private int headerPos;
+        private int bodyRemaining;
+        private boolean handshakeRecord;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+        void feed(byte[] b, int off, int len) {
+            try {
+                while (len > 0 && !complete) {
+                    if (bodyRemaining == 0) {
+                        header[headerPos++] = b[off++];
+                        len--;
+                        if (headerPos == header.length) {
+                            headerPos = 0;
+                            handshakeRecord = (header[0] & 0xff) == RECORD_HANDSHAKE;
+                            bodyRemaining = u16(header, 3);
+                        }
+                    } else {
+                        int n = Math.min(len, bodyRemaining);
+                        if (handshakeRecord) {
+                            pending.write(b, off, n);
+                        }
+                        off += n;
+                        len -= n;
+                        bodyRemaining -= n;
+                        if (bodyRemaining == 0 && handshakeRecord) {
+                            drainMessages();
+                        }
+                    }
+                }
+            } catch (RuntimeException malformed) {
+                // never let the observer break the connection; just stop looking
+                complete = true;
+            }
+        }
+
+        private void drainMessages() {
+            byte[] buf = pending.toByteArray();
+            int pos = 0;
+            while (buf.length - pos >= 4) {
+                int msgLen = u24(buf, pos + 1);
+                if (buf.length - pos - 4 < msgLen) {
+                    break;
+                }
+                onHandshakeMessage(buf[pos] & 0xff, buf, pos + 4, msgLen);
+                pos += 4 + msgLen;
+            }
+            if (complete) {
+                // drop the reassembly buffer so long-held connections don't keep ClientHello-sized arrays
+                pending = new ByteArrayOutputStream(0);
+                return;
+            }
+            pending.reset();
+            pending.write(buf, pos, buf.length - pos);
+        }
+    }
+
+    /**
+     * Plain socket whose streams are observed by a {@link HandshakeTap}. Layer an
+     * {@link javax.net.ssl.SSLSocket} over it with
+     * {@code SSLSocketFactory.createSocket(Socket, String, int, boolean)} (client) or
+     * {@code SSLSocketFactory.createSocket(Socket, InputStream, boolean)} (server).
+     */
+    static class TappedSocket extends Socket {
+        private final HandshakeTap tap = new HandshakeTap();
+        private InputStream in;
+        private OutputStream out;
+
+        HandshakeTap tap() {
+            return tap;
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = tap.wrap(super.getInputStream());
+            }
+            return in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = tap.wrap(super.getOutputStream());
+            }
+            return out;
+        }
+    }
+
+    /** Listening socket whose accepted connections are {@link TappedSocket}s. */
+    static class TappedServerSocket extends ServerSocket {
+        TappedServerSocket(int port) throws IOException {
+            super(port);
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            TappedSocket s = new TappedSocket();
+            implAccept(s);
+            return s;
+        }
+    }
+}
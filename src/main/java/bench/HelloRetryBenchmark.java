@@ -0,0 +1,174 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the cost of HelloRetryRequest round trips.
+ *
+ * <p>For every server mode an in-process {@link HybridTlsServer} is started on an ephemeral port and
+ * each client key-share mode runs the same number of sequential handshakes twice: once with a fixed
+ * offer order and once with a {@link KeySharePredictor} that offers the last negotiated group first.
+ * The report shows the HRR rate and latency for each (server mode, client mode, prediction) cell.
+ *
+ * <p>Every server first gets an unmeasured warm-up pass with each client mode, and the two prediction
+ * cells alternate which runs first, so neither absorbs JIT or class loading. Session resumption is off
+ * so every cell measures full handshakes.
+ */
+public class HelloRetryBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HelloRetryBenchmark.class);
+    private static final int WARMUP_HANDSHAKES = 50;
+
+    public static void main(String[] args) throws Exception {
+        // Usage: HelloRetryBenchmark [runs]
+        int runs = 200;
+        if (args.length >= 1) {
+            runs = Integer.parseInt(args[0]);
+        }
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    HELLO RETRY REQUEST COST");
+        LOGGER.info("===========================================");
+        LOGGER.info("Sequential handshakes per cell: {}", runs);
+
+        List<Row> rows = new ArrayList<>();
+        for (String serverMode : GroupModes.SERVER_MODES) {
+            String[] serverGroups = GroupModes.supportedOnly(GroupModes.forMode(serverMode));
+            if (serverGroups.length == 0) {
+                LOGGER.warn("Skipping server mode {}: no supported named groups in this JVM", serverMode);
+                continue;
+            }
+
+            HybridTlsServer server = new HybridTlsServer(0, serverGroups);
+            Thread serverThread = server.startInBackground("hrr-server-" + serverMode);
+            try {
+                Map<String, String[]> clientModes = new LinkedHashMap<>();
+                for (String clientMode : GroupModes.KEY_SHARE_MODES) {
+                    String[] declared = GroupModes.forMode(clientMode);
+                    String[] clientGroups = GroupModes.supportedOnly(declared);
+                    if (clientGroups.length == 0 || !clientGroups[0].equals(declared[0])) {
+                        LOGGER.warn("Skipping client mode {}: leading group {} not supported in this JVM",
+                                clientMode, declared[0]);
+                        continue;
+                    }
+                    clientModes.put(clientMode, clientGroups);
+                }
+                for (String[] clientGroups : clientModes.values()) {
+                    runCell(server.getPort(), serverMode, "warm-up", clientGroups, false, WARMUP_HANDSHAKES);
+                }
+                boolean predictFirst = false;
+                for (Map.Entry<String, String[]> e : clientModes.entrySet()) {
+                    Row first = runCell(server.getPort(), serverMode, e.getKey(), e.getValue(), predictFirst, runs);
+                    Row second = runCell(server.getPort(), serverMode, e.getKey(), e.getValue(), !predictFirst, runs);
+                    // reported off before on whichever ran first
+                    rows.add(predictFirst ? second : first);
+                    rows.add(predictFirst ? first : second);
+                    predictFirst = !predictFirst;
+                }
+            } finally {
+                server.stop();
+                serverThread.join(1000);
+            }
+        }
+
+        printRows(rows);
+    }
+
+    private static Row runCell(int port, String serverMode, String clientMode, String[] groups,
+                               boolean predict, int runs) throws Exception {
+        HybridTlsClient client = new HybridTlsClient("localhost", port, groups,
+                predict ? new KeySharePredictor() : null);
+        client.setSessionResumption(false);
+        client.setHandshakeTap(true);
+
+        Row row = new Row(serverMode, clientMode, predict);
+        Map<String, Integer> groupCounts = new LinkedHashMap<>();
+        Map<String, Integer> shareCounts = new LinkedHashMap<>();
+        for (int i = 0; i < runs; i++) {
+            try {
+                HybridTlsClient.Handshake h = client.runSingleConnection();
+                row.times.add(h.millis);
+                if (h.helloRetry) {
+                    row.helloRetries++;
+                }
+                groupCounts.merge(String.valueOf(h.group), 1, Integer::sum);
+                shareCounts.merge(String.join("+", h.keyShares), 1, Integer::sum);
+            } catch (Exception e) {
+                row.failures++;
+            }
+        }
+        row.group = mostCommon(groupCounts);
+        row.keyShares = mostCommon(shareCounts);
+        Collections.sort(row.times);
+        return row;
+    }
+
+    private static String mostCommon(Map<String, Integer> counts) {
+        return counts.isEmpty() ? "-" : Collections.max(counts.entrySet(), Map.Entry.comparingByValue()).getKey();
+    }
+
+    private static void printRows(List<Row> rows) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-10s %-16s %-8s %-26s %-16s %-8s %-8s %-10s %-10s %-10s",
+                "Server", "Client", "Predict", "Initial key shares", "Group", "HRR", "HRR %", "Mean", "Median", "p99"));
+        LOGGER.info("-".repeat(131));
+        for (Row r : rows) {
+            if (r.times.isEmpty()) {
+                LOGGER.info(String.format("%-10s %-16s %-8s (all %d handshakes failed)",
+                        r.serverMode, r.clientMode, r.predict ? "on" : "off", r.failures));
+                continue;
+            }
+            LOGGER.info(String.format("%-10s %-16s %-8s %-26s %-16s %-8d %-8.1f %-10.3f %-10.3f %-10.3f",
+                    r.serverMode, r.clientMode, r.predict ? "on" : "off", r.keyShares, r.group, r.helloRetries,
+                    r.helloRetryRate(), r.mean(), HybridTlsClient.percentile(r.times, 50),
+                    HybridTlsClient.percentile(r.times, 99)));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("server_mode,client_mode,prediction,key_shares,group,success,fail,hrr,hrr_pct,mean_ms,median_ms,p99_ms");
+        for (Row r : rows) {
+            if (r.times.isEmpty()) {
+                continue;
+            }
+            LOGGER.info(String.format("%s,%s,%s,%s,%s,%d,%d,%d,%.1f,%.3f,%.3f,%.3f",
+                    r.serverMode, r.clientMode, r.predict ? "on" : "off", r.keyShares, r.group, r.times.size(), r.failures,
+                    r.helloRetries, r.helloRetryRate(), r.mean(), HybridTlsClient.percentile(r.times, 50),
+                    HybridTlsClient.percentile(r.times, 99)));
+        }
+    }
+
+    static class Row {
+        final String serverMode;
+        final String clientMode;
+        final boolean predict;
+        final List<Double> times = new ArrayList<>();
+        int helloRetries;
+        int failures;
+        String group;
+        String keyShares;
+
+        Row(String serverMode, String clientMode, boolean predict) {
+            this.serverMode = serverMode;
+            this.clientMode = clientMode;
+            this.predict = predict;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double t : times) sum += t;
+            return sum / times.size();
+        }
+
+        double helloRetryRate() {
+            return 100.0 * helloRetries / times.size();
+        }
+    }
+}
@@ -2,11 +2,13 @@ package bench;
 
 import javax.net.ssl.*;
 import java.io.*;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,87 +22,231 @@ public class HybridTlsClient {
 
     private final String host;
     private final int port;
-    private final String[] namedGroups;
-    private final SSLContext sslContext;
+    private final ClientMix mix;
+    private final KeySharePredictor predictor;
+    private volatile RandomStrategy randomStrategy = RandomStrategy.defaultStrategy();
+    private volatile ChainValidation validation = ChainValidation.off();
+    private volatile JsseProvider jsseProvider = JsseProvider.defaultProvider();
+    // built on first use from the three settings above; a setter drops it
+    private SSLContext sslContext;
+    private volatile boolean sessionResumption = true;
+    private volatile String[] cipherSuites;
+    private volatile boolean handshakeTap;
 
     public HybridTlsClient(String host, int port, String[] namedGroups) throws Exception {
+        this(host, port, namedGroups, null);
+    }
+
+    /**
+     * @param predictor optional per-server cache of the last negotiated group; when non-null the
+     *                  predicted group is offered first so its key share goes in the ClientHello
+     */
+    public HybridTlsClient(String host, int port, String[] namedGroups, KeySharePredictor predictor) throws Exception {
+        this(host, port, ClientMix.of(namedGroups), predictor);
+    }
+
+    /**
+     * @param mix weighted client profiles; every connection draws one and offers its named groups
+     */
+    public HybridTlsClient(String host, int port, ClientMix mix, KeySharePredictor predictor) throws Exception {
         this.host = host;
         this.port = port;
-        this.namedGroups = namedGroups;
-        this.sslContext = createClientContext();
+        this.mix = mix;
+        this.predictor = predictor;
+    }
+
+    /** How the SecureRandom handed to {@code SSLContext.init} is built (the JDK default if not set). */
+    synchronized void setRandomStrategy(RandomStrategy strategy) {
+        this.randomStrategy = strategy;
+        this.sslContext = null;
+    }
+
+    /** How the server certificate chain is checked (trust-all, the default, when off). */
+    synchronized void setChainValidation(ChainValidation validation) {
+        this.validation = validation;
+        this.sslContext = null;
+    }
+
+    /** JSSE implementation behind the client SSLContext (SunJSSE by default). */
+    synchronized void setJsseProvider(JsseProvider provider) {
+        this.jsseProvider = provider;
+        this.sslContext = null;
+    }
+
+    /**
+     * With resumption on (the default) connections after the first resume the cached TLS 1.3 session
+     * with a PSK, so no certificate is sent or validated; turn it off to measure full handshakes.
+     */
+    void setSessionResumption(boolean enabled) {
+        this.sessionResumption = enabled;
+    }
+
+    /** Restrict the TLS 1.3 cipher suites offered (null, the default, offers the provider's list). */
+    void setCipherSuites(String[] suites) {
+        this.cipherSuites = suites;
+    }
+
+    /**
+     * Layer TLS over a {@link HandshakeTap} so the negotiated group, HelloRetryRequest, resumption and
+     * initial key shares are read off the wire. Off by default, so plain connections measure the same
+     * socket path as before; always on with a predictor, which needs the negotiated group.
+     */
+    void setHandshakeTap(boolean enabled) {
+        this.handshakeTap = enabled;
+    }
+
+    private boolean tapped() {
+        return handshakeTap || predictor != null;
     }
 
     public static void main(String[] args) {
         try {
-            if (args.length < 1) {
-                LOGGER.error("Usage: HybridTlsClient classical|hybrid [concurrency runsPerThread]");
+            List<String> positional = new ArrayList<>();
+            Map<String, String> options = parseOptions(args, positional);
+            if (positional.isEmpty()) {
+                LOGGER.error("Usage: HybridTlsClient <mode> [concurrency runsPerThread] [--predict] [--mix=mode:weight,...] [--record[=label]] [--rng=spec] [--hold=n [--hold-seconds=s]] [--validate=spec --truststore=file] [--no-resume] [--provider=sunjsse|bcjsse] [--tap]");
+                LOGGER.error("  mode: classical|hybrid|pqc|classical-first|hybrid-first|pqc-first|mixed");
+                LOGGER.error("  --predict: offer the last negotiated group first (avoids HelloRetryRequest)");
+                LOGGER.error("  --mix: weighted client population for mode 'mixed', e.g. classical:70,hybrid:25,pqc:5");
+                LOGGER.error("  --record[=label]: append the run to the results store (--store=dir, default results/store)");
+                LOGGER.error("  --rng: SecureRandom strategy: default|drbg[:strength[:capability]]|nativeprng-nonblocking|per-thread[:inner]");
+                LOGGER.error("  --hold=n: open n connections, keep them open for --hold-seconds (default 60), then close them");
+                LOGGER.error("  --validate: server chain validation: off|pkix|cached[:maxEntries], against --truststore (see BenchPki)");
+                LOGGER.error("  --no-resume: full handshake on every connection (no TLS 1.3 PSK session resumption)");
+                LOGGER.error("  --provider: JSSE implementation (bcjsse needs bctls/bcprov on the classpath)");
+                LOGGER.error("  --tap: observe handshakes on the wire for HRR/resumption counts and the per-group breakdown");
+                LOGGER.error("         (implied by --predict and mode 'mixed')");
                 LOGGER.error("Example: HybridTlsClient classical 10 100");
                 LOGGER.error("  Or: HybridTlsClient classical  (defaults to concurrency=1,runsPerThread=1)");
                 System.exit(1);
             }
 
-            String mode = args[0].toLowerCase();
+            String mode = positional.get(0).toLowerCase();
             int concurrency = 1;
             int runsPerThread = 1;
-            if (args.length >= 3) {
-                concurrency = Integer.parseInt(args[1]);
-                runsPerThread = Integer.parseInt(args[2]);
-            } else if (args.length == 2) {
+            if (positional.size() >= 3) {
+                concurrency = Integer.parseInt(positional.get(1));
+                runsPerThread = Integer.parseInt(positional.get(2));
+            } else if (positional.size() == 2) {
                 // allow: mode concurrency
-                concurrency = Integer.parseInt(args[1]);
+                concurrency = Integer.parseInt(positional.get(1));
                 runsPerThread = 1;
             }
 
-            String[] namedGroups;
-            switch (mode) {
-                case "classical":
-                    namedGroups = new String[]{"x25519"};
-                    break;
-                case "hybrid":
-                    namedGroups = new String[]{"X25519MLKEM768", "x25519"};
-                    break;
-                case "pqc":
-                case "pqc-only":
-                    namedGroups = new String[]{"MLKEM768"};
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown mode: " + mode);
+            ClientMix mix;
+            if ("mixed".equals(mode)) {
+                if (!options.containsKey("mix")) {
+                    throw new IllegalArgumentException("Mode 'mixed' requires --mix=mode:weight,...");
+                }
+                mix = ClientMix.parse(options.get("mix"));
+            } else {
+                mix = ClientMix.of(GroupModes.forMode(mode));
+            }
+            boolean predict = options.containsKey("predict");
+            boolean tap = options.containsKey("tap") || predict || "mixed".equals(mode);
+            RandomStrategy rng = RandomStrategy.parse(options.getOrDefault("rng", "default"));
+            KeyStore trustStore = null;
+            if (options.containsKey("truststore")) {
+                trustStore = KeyStore.getInstance(new File(options.get("truststore")), BenchPki.PASSWORD.toCharArray());
             }
+            ChainValidation validation = ChainValidation.parse(options.getOrDefault("validate", "off"), trustStore);
+            JsseProvider provider = JsseProvider.parse(options.getOrDefault("provider", "sunjsse"));
 
             LOGGER.info("===========================================");
             LOGGER.info("Client Mode: {}", mode.toUpperCase());
-            LOGGER.info("TLS Named Groups: {}", String.join(", ", namedGroups));
+            if ("mixed".equals(mode)) {
+                LOGGER.info("Client Mix: {}", mix);
+            }
+            for (ClientMix.Profile p : mix.profiles()) {
+                LOGGER.info("TLS Named Groups ({}): {}", p.mode, String.join(", ", p.namedGroups));
+            }
+            LOGGER.info("Key-share prediction: {}", predict ? "on" : "off");
+            LOGGER.info("SecureRandom strategy: {}", rng);
+            LOGGER.info("Chain validation: {}", validation);
+            LOGGER.info("JSSE provider: {}", provider);
+            LOGGER.info("Session resumption: {}", options.containsKey("no-resume") ? "off" : "on");
+            LOGGER.info("Handshake tap: {}", tap ? "on" : "off");
             LOGGER.info("Concurrency: {} threads", concurrency);
             LOGGER.info("Runs per thread: {}", runsPerThread);
             LOGGER.info("Total connections: {}", (concurrency * runsPerThread));
             LOGGER.info("===========================================");
 
-            HybridTlsClient client = new HybridTlsClient("localhost", 8443, namedGroups);
-            client.runConcurrentBenchmark(concurrency, runsPerThread);
+            HybridTlsClient client = new HybridTlsClient("localhost", 8443, mix, predict ? new KeySharePredictor() : null);
+            client.setRandomStrategy(rng);
+            client.setChainValidation(validation);
+            client.setJsseProvider(provider);
+            client.setSessionResumption(!options.containsKey("no-resume"));
+            client.setHandshakeTap(tap);
+            if (options.containsKey("hold")) {
+                int connections = Integer.parseInt(options.get("hold"));
+                long holdSeconds = Long.parseLong(options.getOrDefault("hold-seconds", "60"));
+                List<SSLSocket> held = client.openAndHold(connections, concurrency, null);
+                LOGGER.info("Keeping {} connections open for {} s", held.size(), holdSeconds);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(holdSeconds));
+                closeAll(held);
+                return;
+            }
+            ResultsAnalyzer.Stats stats = client.runConcurrentBenchmark(concurrency, runsPerThread);
+            if (validation.cache() != null) {
+                LOGGER.info("Chain cache: {} hits, {} misses, {} evictions", validation.cache().hits(),
+                        validation.cache().misses(), validation.cache().evictions());
+            }
+
+            if (options.containsKey("record") && stats != null) {
+                StringBuilder groups = new StringBuilder();
+                for (ClientMix.Profile p : mix.profiles()) {
+                    if (groups.length() > 0) groups.append(';');
+                    if (mix.profiles().size() > 1) groups.append(p.mode).append('=').append(p.weight).append(':');
+                    groups.append(String.join("+", p.namedGroups));
+                }
+                ResultsStore.Run run = ResultsStore.Run.forCurrentEnvironment(mode, groups.toString(), stats);
+                run.label = options.get("record");
+                ResultsStore store = new ResultsStore(java.nio.file.Path.of(
+                        options.getOrDefault("store", ResultsStore.DEFAULT_DIR)));
+                long id = store.append(run);
+                LOGGER.info("Recorded run {} ({}, {}, commit {})", id, run.jdk, run.cpu, run.commit);
+            }
         } catch (Exception e) {
             LOGGER.error("Error running client", e);
             System.exit(1);
         }
     }
 
-    private SSLContext createClientContext() throws Exception {
-        TrustManager[] trustAll = new TrustManager[]{
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                    public void checkClientTrusted(X509Certificate[] certs, String s) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String s) {}
+    /**
+     * Split {@code --name} / {@code --name=value} options from positional arguments. Flags without a
+     * value map to an empty string.
+     */
+    static Map<String, String> parseOptions(String[] args, List<String> positional) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    options.put(arg.substring(2), "");
+                } else {
+                    options.put(arg.substring(2, eq), arg.substring(eq + 1));
                 }
-        };
-        SSLContext ctx = SSLContext.getInstance("TLS");
-        ctx.init(null, trustAll, new SecureRandom());
-        return ctx;
+            } else {
+                positional.add(arg);
+            }
+        }
+        return options;
     }
 
-    public void runConcurrentBenchmark(int concurrency, int runsPerThread) throws Exception {
+    private synchronized SSLContext context() throws Exception {
+        if (sslContext == null) {
+            sslContext = jsseProvider.newContext(null, validation.trustManagers(), randomStrategy.create());
+        }
+        return sslContext;
+    }
+
+    /** Run the benchmark, log the results and return the aggregate (null if nothing succeeded). */
+    public ResultsAnalyzer.Stats runConcurrentBenchmark(int concurrency, int runsPerThread) throws Exception {
         ExecutorService executor = Executors.newFixedThreadPool(concurrency);
         List<Double> allHandshakeTimes = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger helloRetryCount = new AtomicInteger(0);
+        AtomicInteger resumedCount = new AtomicInteger(0);
+        GroupStats groupStats = new GroupStats();
         AtomicInteger successCount = new AtomicInteger(0);
         AtomicInteger failCount = new AtomicInteger(0);
         CountDownLatch latch = new CountDownLatch(concurrency);
@@ -113,8 +259,15 @@ public class HybridTlsClient {
                 try {
                     for (int i = 0; i < runsPerThread; i++) {
                         try {
-                            double handshakeMs = runSingleConnection();
-                            allHandshakeTimes.add(handshakeMs);
+                            Handshake handshake = runSingleConnection();
+                            allHandshakeTimes.add(handshake.millis);
+                            groupStats.record(handshake.group, handshake.millis);
+                            if (handshake.helloRetry) {
+                                helloRetryCount.incrementAndGet();
+                            }
+                            if (handshake.resumed) {
+                                resumedCount.incrementAndGet();
+                            }
                             successCount.incrementAndGet();
                         } catch (Exception e) {
                             failCount.incrementAndGet();
@@ -132,25 +285,101 @@ public class HybridTlsClient {
         long benchmarkEnd = System.nanoTime();
         double totalSeconds = (benchmarkEnd - benchmarkStart) / 1_000_000_000.0;
 
-        printResults(allHandshakeTimes, successCount.get(), failCount.get(),
-                concurrency, runsPerThread, totalSeconds);
+        ResultsAnalyzer.Stats stats = printResults(allHandshakeTimes, successCount.get(), failCount.get(),
+                tapped() ? helloRetryCount.get() : -1, tapped() ? resumedCount.get() : -1, concurrency,
+                runsPerThread, totalSeconds);
+        if (tapped()) {
+            groupStats.log(LOGGER, totalSeconds);
+        }
+        return stats;
     }
 
     /* package-private helper for tests */
     double runSingleHandshake() throws Exception {
-        return runSingleConnection();
+        return runSingleConnection().millis;
     }
 
-    private double runSingleConnection() throws Exception {
-        SSLSocketFactory factory = sslContext.getSocketFactory();
+    /* package-private: one measured handshake plus echo (group etc. observed only with the tap on) */
+    Handshake runSingleConnection() throws Exception {
+        return connect(null);
+    }
 
-        try (SSLSocket socket = (SSLSocket) factory.createSocket(host, port)) {
+    /**
+     * Open {@code connections} established connections (handshake plus echo) from {@code concurrency}
+     * threads and leave them open. Failed connections are logged and skipped; the caller owns the
+     * returned sockets and must close them. When {@code negotiated} is non-null it receives a count of
+     * held connections per negotiated group.
+     */
+    List<SSLSocket> openAndHold(int connections, int concurrency, Map<String, Integer> negotiated)
+            throws InterruptedException {
+        List<SSLSocket> held = Collections.synchronizedList(new ArrayList<>(connections));
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        for (int t = 0; t < concurrency; t++) {
+            executor.submit(() -> {
+                int n;
+                while ((n = next.incrementAndGet()) <= connections) {
+                    try {
+                        Handshake h = connect(held);
+                        if (negotiated != null) {
+                            negotiated.merge(h.group != null ? h.group : "unknown", 1, Integer::sum);
+                        }
+                    } catch (Exception e) {
+                        if (failCount.incrementAndGet() == 1) {
+                            LOGGER.warn("Connection failed while ramping up: {}", e.toString());
+                        }
+                    }
+                    if (n % 1000 == 0) {
+                        LOGGER.info("Holding {} connections ({} failed)", held.size(), failCount.get());
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        LOGGER.info("Holding {} connections ({} failed)", held.size(), failCount.get());
+        return held;
+    }
+
+    /**
+     * Handshake plus echo; when {@code holder} is non-null the socket is added to it and left open.
+     * Without the tap the returned group is null and no HelloRetryRequest or resumption is reported.
+     */
+    Handshake connect(List<SSLSocket> holder) throws Exception {
+        SSLSocketFactory factory = context().getSocketFactory();
+        String server = host + ":" + port;
+
+        HandshakeTap.TappedSocket raw = null;
+        SSLSocket socket;
+        if (tapped()) {
+            raw = new HandshakeTap.TappedSocket();
+            try {
+                raw.connect(new InetSocketAddress(host, port));
+            } catch (IOException e) {
+                raw.close();
+                throw e;
+            }
+            socket = (SSLSocket) factory.createSocket(raw, host, port, true);
+        } else {
+            socket = (SSLSocket) factory.createSocket(host, port);
+        }
+        boolean keepOpen = false;
+        try {
             SSLParameters params = socket.getSSLParameters();
             params.setProtocols(new String[]{"TLSv1.3"});
             // ensure SNI is present
             params.setServerNames(Collections.singletonList(new SNIHostName(host)));
-            if (namedGroups != null && namedGroups.length > 0) {
-                params.setNamedGroups(namedGroups);
+            if (validation.enabled()) {
+                params.setEndpointIdentificationAlgorithm("HTTPS");
+            }
+            if (cipherSuites != null) {
+                params.setCipherSuites(cipherSuites);
+            }
+            String[] namedGroups = mix.pick().namedGroups;
+            String[] offered = predictor != null ? predictor.order(server, namedGroups) : namedGroups;
+            if (offered != null && offered.length > 0) {
+                params.setNamedGroups(offered);
             }
             socket.setSSLParameters(params);
 
@@ -167,15 +396,51 @@ public class HybridTlsClient {
             writer.flush();
             reader.readLine();
 
-            return (end - start) / 1_000_000.0;
+            if (!sessionResumption) {
+                // drops the session and the ticket received with the echo, so the next connection
+                // is a full handshake (certificate sent and checked) instead of a PSK resumption
+                socket.getSession().invalidate();
+            }
+            if (holder != null) {
+                holder.add(socket);
+                keepOpen = true;
+            }
+            double millis = (end - start) / 1_000_000.0;
+            if (raw == null) {
+                return new Handshake(millis, null, false, false, Collections.emptyList());
+            }
+            HandshakeTap tap = raw.tap();
+            if (predictor != null) {
+                predictor.record(server, tap.negotiatedGroup());
+            }
+            return new Handshake(millis, tap.negotiatedGroup(), tap.helloRetryRequested(), tap.resumed(),
+                    tap.initialKeyShares());
+        } finally {
+            if (!keepOpen) {
+                socket.close();
+            }
         }
     }
 
-    private void printResults(List<Double> times, int success, int fail,
-                              int concurrency, int runsPerThread, double totalSeconds) {
+    static void closeAll(List<SSLSocket> sockets) {
+        synchronized (sockets) {
+            for (SSLSocket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Error closing held connection: {}", e.toString());
+                }
+            }
+            sockets.clear();
+        }
+    }
+
+    // helloRetries and resumed are -1 when handshakes were not tapped
+    private ResultsAnalyzer.Stats printResults(List<Double> times, int success, int fail, int helloRetries,
+                                               int resumed, int concurrency, int runsPerThread, double totalSeconds) {
         if (times.isEmpty()) {
             LOGGER.error("No successful connections!");
-            return;
+            return null;
         }
 
         Collections.sort(times);
@@ -202,6 +467,11 @@ public class HybridTlsClient {
         LOGGER.info("Connections: {} success, {} failed", success, fail);
         LOGGER.info("Duration: {} seconds", String.format("%.2f", totalSeconds));
         LOGGER.info("Throughput: {} connections/sec", String.format("%.2f", throughput));
+        if (helloRetries >= 0) {
+            LOGGER.info("HelloRetryRequests: {} ({}%)", helloRetries,
+                    String.format("%.1f", 100.0 * helloRetries / success));
+            LOGGER.info("Resumed (PSK): {} ({}%)", resumed, String.format("%.1f", 100.0 * resumed / success));
+        }
         LOGGER.info("");
         LOGGER.info("--- Handshake Latency (ms) ---");
         LOGGER.info(String.format("  Min:    %.3f", min));
@@ -220,9 +490,23 @@ public class HybridTlsClient {
         LOGGER.info("concurrency,runs,success,fail,mean_ms,median_ms,p90_ms,p95_ms,p99_ms,max_ms,throughput");
         LOGGER.info(String.format("%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f",
                 concurrency, runsPerThread, success, fail, mean, median, p90, p95, p99, max, throughput));
+
+        ResultsAnalyzer.Stats stats = new ResultsAnalyzer.Stats();
+        stats.concurrency = concurrency;
+        stats.runs = runsPerThread;
+        stats.success = success;
+        stats.fail = fail;
+        stats.mean = mean;
+        stats.median = median;
+        stats.p90 = p90;
+        stats.p95 = p95;
+        stats.p99 = p99;
+        stats.max = max;
+        stats.throughput = throughput;
+        return stats;
     }
 
-    private double percentile(List<Double> sortedList, double p) {
+    static double percentile(List<Double> sortedList, double p) {
         int n = sortedList.size();
         double rank = (p / 100.0) * (n - 1);
         int low = (int) Math.floor(rank);
@@ -231,4 +515,23 @@ public class HybridTlsClient {
         double weight = rank - low;
         return sortedList.get(low) * (1 - weight) + sortedList.get(high) * weight;
     }
+
+    /** Outcome of one measured handshake. */
+    static final class Handshake {
+        final double millis;
+        final String group;
+        final boolean helloRetry;
+        /** PSK resumption: the server certificate was neither sent nor checked. */
+        final boolean resumed;
+        /** Groups that carried a key share in the first ClientHello. */
+        final List<String> keyShares;
+
+        Handshake(double millis, String group, boolean helloRetry, boolean resumed, List<String> keyShares) {
+            this.millis = millis;
+            this.group = group;
+            this.helloRetry = helloRetry;
+            this.resumed = resumed;
+            this.keyShares = keyShares;
+        }
+    }
 }
@@ -2,8 +2,19 @@ package bench;
 
 import javax.net.ssl.*;
 import java.io.*;
-import java.security.SecureRandom;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,45 +22,170 @@ import org.slf4j.LoggerFactory;
 public class HybridTlsServer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HybridTlsServer.class);
+    static final int DEFAULT_PREWARM_ROUNDS = 50;
+    static final int DEFAULT_HOLD_SAMPLE_EVERY = 1000;
 
     private final int port;
     private final String[] namedGroups;
     private final AtomicBoolean running = new AtomicBoolean(true);
-    private volatile SSLServerSocket serverSocket;
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private final GroupStats groupStats = new GroupStats();
+    private volatile ServerSocket serverSocket;
+    private int prewarmRounds;
+    private int workerThreads;
+    private RandomStrategy randomStrategy = RandomStrategy.defaultStrategy();
+    private JsseProvider jsseProvider = JsseProvider.defaultProvider();
+    // in-memory key material (e.g. a leaf with its full CA chain); null loads server.keystore
+    private KeyStore keyStore;
+    private char[] keyStorePassword;
+    // connection-hold mode: keep sockets open after the echo and sample memory every N connections
+    private int holdSampleEvery;
+    // live held connections; each one's watcher removes it when the peer closes
+    private final Set<SSLSocket> heldSockets = ConcurrentHashMap.newKeySet();
+    private int heldAccepted;
+    private final MemorySampler memorySampler = new MemorySampler();
+    // stream mode: after the line echo, echo raw bytes until the client closes
+    private boolean streamEcho;
+    // internal warm-up servers keep per-handshake logging at DEBUG
+    private boolean quiet;
+    // observe handshakes on the wire for the per-group breakdown; off keeps a plain SSLServerSocket
+    private boolean groupBreakdown;
 
     public HybridTlsServer(int port, String[] namedGroups) {
         this.port = port;
         this.namedGroups = namedGroups;
     }
 
+    /**
+     * Run {@code rounds} loopback handshakes per configured named group before the listening socket
+     * is bound, so class loading, provider initialization and JIT happen before the first real client.
+     */
+    void setPrewarmRounds(int rounds) {
+        this.prewarmRounds = rounds;
+    }
+
+    /**
+     * Handle connections on a pool of {@code threads} workers instead of inline on the accept thread
+     * (0, the default, keeps the serial behavior).
+     */
+    void setWorkerThreads(int threads) {
+        this.workerThreads = threads;
+    }
+
+    /** SecureRandom construction used for every SSLContext this server creates. */
+    void setRandomStrategy(RandomStrategy strategy) {
+        this.randomStrategy = strategy;
+    }
+
+    /** JSSE implementation behind every SSLContext this server creates (SunJSSE by default). */
+    void setJsseProvider(JsseProvider provider) {
+        this.jsseProvider = provider;
+    }
+
+    /**
+     * Serve the key entry in {@code keyStore} instead of loading {@code server.keystore}. The whole
+     * certificate chain stored with the entry is sent to clients.
+     */
+    void setKeyStore(KeyStore keyStore, char[] password) {
+        this.keyStore = keyStore;
+        this.keyStorePassword = password;
+    }
+
+    /**
+     * After the one-line echo, keep echoing raw bytes back until the client closes, so one connection
+     * can carry sustained bidirectional traffic (used by {@link KeyUpdateStress}).
+     */
+    void setStreamEcho(boolean enabled) {
+        this.streamEcho = enabled;
+    }
+
+    /**
+     * Accept through a {@link HandshakeTap} so each handshake's negotiated group is observed and the
+     * per-group latency breakdown is logged on shutdown. Off by default: connections are accepted on
+     * a plain {@link SSLServerSocket}, the same path the baseline numbers were measured on.
+     */
+    void setGroupBreakdown(boolean enabled) {
+        this.groupBreakdown = enabled;
+    }
+
+    /**
+     * Keep every connection open after the echo instead of closing it, and sample heap / native
+     * memory each time another {@code sampleEvery} connections have been accepted.
+     *
+     * <p>So the samples hold TLS state only, hold mode always accepts on a plain
+     * {@link SSLServerSocket} (the group breakdown is ignored) and records no per-handshake
+     * statistics. A virtual thread per held connection blocks on a read and drops the connection as
+     * soon as the peer closes it, so samples count live connections without re-probing the others.
+     */
+    void setHoldConnections(int sampleEvery) {
+        this.holdSampleEvery = sampleEvery;
+    }
+
     public void start() throws Exception {
         SSLContext sslContext = createServerContext();
-        SSLServerSocketFactory ssf = sslContext.getServerSocketFactory();
+        SSLSocketFactory sf = sslContext.getSocketFactory();
+        if (prewarmRounds > 0) {
+            prewarm();
+        }
+        ExecutorService workers = workerThreads > 0 ? Executors.newFixedThreadPool(workerThreads) : null;
         try {
-            serverSocket = (SSLServerSocket) ssf.createServerSocket(port);
-
-            SSLParameters params = serverSocket.getSSLParameters();
+            SSLParameters params = sslContext.getDefaultSSLParameters();
             // Configure TLS 1.3 only for cleaner results
             params.setProtocols(new String[] {"TLSv1.3"});
             if (namedGroups != null && namedGroups.length > 0) {
                 params.setNamedGroups(namedGroups);
             }
 
+            if (groupBreakdown && holdSampleEvery == 0) {
+                // Plain listener with TLS layered per connection so the handshake can be observed on the
+                // wire (JSSE does not expose the negotiated named group)
+                serverSocket = new HandshakeTap.TappedServerSocket(port);
+            } else {
+                // in hold mode the tap's wrapper socket and scan state would also count as TLS memory
+                SSLServerSocket plain = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(port);
+                plain.setSSLParameters(params);
+                serverSocket = plain;
+            }
+
             // Log supported named groups for easier debugging
             String[] supported = sslContext.getSupportedSSLParameters().getNamedGroups();
-            if (supported != null && supported.length > 0) {
-                LOGGER.info("Supported named groups: {}", String.join(", ", supported));
+            if (quiet) {
+                LOGGER.debug("Warm-up server listening on port {}", serverSocket.getLocalPort());
             } else {
-                LOGGER.info("Supported named groups: (none)");
+                if (supported != null && supported.length > 0) {
+                    LOGGER.info("Supported named groups: {}", String.join(", ", supported));
+                } else {
+                    LOGGER.info("Supported named groups: (none)");
+                }
+                LOGGER.info("Server listening on port {}", serverSocket.getLocalPort());
             }
-
-            serverSocket.setSSLParameters(params);
-
-            LOGGER.info("Server listening on port {}", port);
+            if (holdSampleEvery > 0) {
+                memorySampler.sample(0, 0, heldLabel(), LOGGER);
+            }
+            listening.countDown();
             while (running.get()) {
                 try {
-                    SSLSocket socket = (SSLSocket) serverSocket.accept();
-                    handleClient(socket);
+                    Socket raw = serverSocket.accept();
+                    SSLSocket socket;
+                    HandshakeTap tap = null;
+                    if (raw instanceof HandshakeTap.TappedSocket) {
+                        try {
+                            socket = (SSLSocket) sf.createSocket(raw, null, true);
+                            socket.setSSLParameters(params);
+                        } catch (IOException | RuntimeException layerEx) {
+                            raw.close();
+                            throw layerEx;
+                        }
+                        tap = ((HandshakeTap.TappedSocket) raw).tap();
+                    } else {
+                        socket = (SSLSocket) raw;
+                    }
+                    HandshakeTap handshakeTap = tap;
+                    if (workers != null) {
+                        workers.execute(() -> handleClient(socket, handshakeTap));
+                    } else {
+                        handleClient(socket, handshakeTap);
+                    }
                 } catch (IOException acceptEx) {
                     if (!running.get()) {
                         // shutting down; break loop
@@ -59,6 +195,10 @@ public class HybridTlsServer {
                 }
             }
         } finally {
+            listening.countDown();
+            if (workers != null) {
+                workers.shutdown();
+            }
             if (serverSocket != null && !serverSocket.isClosed()) {
                 try {
                     serverSocket.close();
@@ -69,12 +209,82 @@ public class HybridTlsServer {
         }
     }
 
+    /**
+     * Run {@link #start()} on a daemon thread and return once the server socket is listening.
+     * Used by the benchmark modes that drive an in-process server (pass port 0 for an ephemeral port).
+     */
+    Thread startInBackground(String threadName) throws Exception {
+        Thread t = new Thread(() -> {
+            try {
+                start();
+            } catch (Exception e) {
+                LOGGER.error("Server thread failed", e);
+            }
+        }, threadName);
+        t.setDaemon(true);
+        t.start();
+        if (!listening.await(10, TimeUnit.SECONDS) || serverSocket == null || serverSocket.isClosed()) {
+            throw new IllegalStateException("Server did not start listening on port " + port);
+        }
+        return t;
+    }
+
+    private void prewarm() throws Exception {
+        String[] groups = namedGroups != null && namedGroups.length > 0
+                ? jsseProvider.supportedOnly(namedGroups) : new String[]{null};
+        long start = System.nanoTime();
+        int done = 0;
+        for (String group : groups) {
+            String[] only = group != null ? new String[]{group} : null;
+            HybridTlsServer warm = new HybridTlsServer(0, only);
+            warm.quiet = true;
+            warm.randomStrategy = randomStrategy;
+            warm.jsseProvider = jsseProvider;
+            warm.keyStore = keyStore;
+            warm.keyStorePassword = keyStorePassword;
+            Thread t = warm.startInBackground("prewarm-" + group);
+            try {
+                HybridTlsClient client = new HybridTlsClient("localhost", warm.getPort(), ClientMix.of(only), null);
+                client.setJsseProvider(jsseProvider);
+                for (int i = 0; i < prewarmRounds; i++) {
+                    try {
+                        client.runSingleConnection();
+                        done++;
+                    } catch (Exception e) {
+                        LOGGER.warn("Pre-warm handshake failed for group {}: {}", group, e.toString());
+                        break;
+                    }
+                }
+            } finally {
+                warm.stop();
+                t.join(1000);
+            }
+        }
+        LOGGER.info("Pre-warm: {} loopback handshakes over groups {} in {} ms", done,
+                java.util.Arrays.toString(groups),
+                String.format("%.1f", (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    /** Bound port once listening (useful when constructed with port 0), otherwise the configured port. */
+    int getPort() {
+        ServerSocket ss = serverSocket;
+        return ss != null ? ss.getLocalPort() : port;
+    }
+
     /**
      * Stop the running server. This will cause the accept() to unblock and the start() loop to exit.
      */
     @SuppressWarnings("unused")
     public void stop() {
         running.set(false);
+        for (SSLSocket held : heldSockets) {
+            try {
+                held.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing held connection: {}", e.toString());
+            }
+        }
+        heldSockets.clear();
         if (serverSocket != null) {
             try {
                 serverSocket.close();
@@ -85,6 +295,11 @@ public class HybridTlsServer {
     }
 
     private SSLContext createServerContext() throws Exception {
+        if (keyStore != null) {
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, keyStorePassword);
+            return jsseProvider.newContext(kmf.getKeyManagers(), null, randomStrategy.create());
+        }
         // Load server key and certificate from JKS (create with keytool beforehand)
         // Load password from application.properties on the classpath (fallback to "changeit")
         Properties props = new Properties();
@@ -116,8 +331,7 @@ public class HybridTlsServer {
                 KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
                 kmf.init(ks, pwdChars);
 
-                SSLContext ctx = SSLContext.getInstance("TLS");
-                ctx.init(kmf.getKeyManagers(), null, new SecureRandom());
+                SSLContext ctx = jsseProvider.newContext(kmf.getKeyManagers(), null, randomStrategy.create());
 
                 // wipe password char array for safety
                 java.util.Arrays.fill(pwdChars, '\0');
@@ -127,8 +341,7 @@ public class HybridTlsServer {
 
         LOGGER.info("server.keystore not found; using default SSLContext (no key managers)");
         // fallback: initialize default SSLContext
-        SSLContext ctx = SSLContext.getInstance("TLS");
-        ctx.init(null, null, new SecureRandom());
+        SSLContext ctx = jsseProvider.newContext(null, null, randomStrategy.create());
         // wipe password char array for safety
         java.util.Arrays.fill(pwdChars, '\0');
         return ctx;
@@ -142,22 +355,43 @@ public class HybridTlsServer {
         KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
         kmf.init(ks, password);
 
-        SSLContext ctx = SSLContext.getInstance("TLS");
-        ctx.init(kmf.getKeyManagers(), null, new SecureRandom());
+        return jsseProvider.newContext(kmf.getKeyManagers(), null, randomStrategy.create());
+    }
 
-        return ctx;
+    /** Log the per-group latency breakdown of all handshakes handled so far. */
+    void logGroupSummary() {
+        if (groupBreakdown && holdSampleEvery == 0) {
+            LOGGER.info("Handshakes handled: {}", groupStats.total());
+            groupStats.log(LOGGER);
+        }
+        if (holdSampleEvery > 0) {
+            memorySampler.logSummary(LOGGER);
+        }
     }
 
-    private void handleClient(SSLSocket socket) {
-        try (SSLSocket s = socket) {
+    /** {@code tap} is null unless the group breakdown is on; then handshakes are not recorded. */
+    private void handleClient(SSLSocket socket, HandshakeTap tap) {
+        boolean keepOpen = false;
+        try {
+            SSLSocket s = socket;
             long start = System.nanoTime();
             s.startHandshake();
             long end = System.nanoTime();
+            double handshakeMs = (end - start) / 1_000_000.0;
+            if (tap != null) {
+                groupStats.record(tap.negotiatedGroup(), handshakeMs);
+            }
 
             SSLSession session = s.getSession();
-            LOGGER.info("Handshake time (ms): {}", (end - start) / 1_000_000.0);
-            LOGGER.info("Protocol: {}", session.getProtocol());
-            LOGGER.info("Cipher suite: {}", session.getCipherSuite());
+            if (!quiet && holdSampleEvery == 0) {
+                LOGGER.info("Handshake time (ms): {}", handshakeMs);
+                LOGGER.info("Protocol: {}", session.getProtocol());
+                LOGGER.info("Cipher suite: {}", session.getCipherSuite());
+                if (tap != null) {
+                    LOGGER.info("Named group: {}{}", tap.negotiatedGroup(),
+                            tap.helloRetryRequested() ? " (after HelloRetryRequest)" : "");
+                }
+            }
 
             // Simple echo to ensure data path works
             BufferedReader reader = new BufferedReader(
@@ -167,6 +401,15 @@ public class HybridTlsServer {
             String line = reader.readLine();
             writer.write("OK: " + line + "\n");
             writer.flush();
+
+            if (streamEcho) {
+                echoUntilClosed(s);
+            }
+
+            if (holdSampleEvery > 0) {
+                keepOpen = true;
+                holdConnection(s);
+            }
         } catch (Exception e) {
             // Quiet known/expected handshake closure or missing-extension cases, but log unexpected errors
             Throwable r = e;
@@ -179,42 +422,137 @@ public class HybridTlsServer {
             } else {
                 LOGGER.error("Error handling client", e);
             }
+        } finally {
+            if (!keepOpen) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Error closing connection: {}", e.toString());
+                }
+            }
+        }
+    }
+
+    private static void echoUntilClosed(SSLSocket s) throws IOException {
+        InputStream in = s.getInputStream();
+        OutputStream out = s.getOutputStream();
+        byte[] buf = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+            out.flush();
+        }
+    }
+
+    private void holdConnection(SSLSocket s) {
+        int accepted;
+        synchronized (heldSockets) {
+            heldSockets.add(s);
+            accepted = ++heldAccepted;
+        }
+        Thread.ofVirtual().name("hts-hold-watch").start(() -> awaitPeerClose(s));
+        if (accepted % holdSampleEvery == 0) {
+            memorySampler.sample(heldSockets.size(), accepted, heldLabel(), LOGGER);
+        }
+    }
+
+    /* package-private for tests: hold-mode memory samples taken so far */
+    List<MemorySampler.Sample> holdSamples() {
+        return memorySampler.samples();
+    }
+
+    /** Samples are labeled with the configured groups; the negotiated one is not observed in hold mode. */
+    private String heldLabel() {
+        return namedGroups != null && namedGroups.length > 0 ? String.join("+", namedGroups) : "default";
+    }
+
+    /**
+     * Block on a read until the peer closes the held connection, then close and drop it. A parked
+     * virtual thread is a few hundred bytes of heap, small next to the connection's TLS state.
+     */
+    private void awaitPeerClose(SSLSocket s) {
+        try {
+            InputStream in = s.getInputStream();
+            while (in.read() >= 0) {
+                // clients send nothing on a held connection; ignore it if they do
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Held connection failed: {}", e.toString());
+        }
+        if (heldSockets.remove(s)) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing dead held connection: {}", e.toString());
+            }
         }
     }
 
     public static void main(String[] args) throws Exception {
-        // Usage: HybridTlsServer <mode> [port]
-        if (args.length < 1) {
-            LOGGER.error("Usage: HybridTlsServer classical|hybrid|pqc [port]");
+        // Usage: HybridTlsServer <mode> [port] [--prewarm[=rounds]] [--workers=n] [--rng=spec] [--hold[=sampleEvery]] [--keystore=file] [--provider=sunjsse|bcjsse] [--stream] [--groups]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        if (positional.isEmpty()) {
+            LOGGER.error("Usage: HybridTlsServer classical|hybrid|pqc [port] [--prewarm[=rounds]] [--workers=n] [--rng=spec] [--hold[=sampleEvery]] [--keystore=file] [--provider=sunjsse|bcjsse] [--stream] [--groups]");
             System.exit(1);
         }
 
-        String mode = args[0].toLowerCase();
+        String mode = positional.get(0).toLowerCase();
         int port = 8443;
-        if (args.length >= 2) {
+        if (positional.size() >= 2) {
             try {
-                port = Integer.parseInt(args[1]);
+                port = Integer.parseInt(positional.get(1));
             } catch (NumberFormatException nfe) {
-                LOGGER.warn("Invalid port: {}, using default 8443", args[1]);
+                LOGGER.warn("Invalid port: {}, using default 8443", positional.get(1));
             }
         }
 
+        JsseProvider provider;
         String[] namedGroups;
-        if ("classical".equalsIgnoreCase(mode)) {
-            namedGroups = new String[]{"x25519"};
-        } else if ("hybrid".equalsIgnoreCase(mode)) {
-            namedGroups = new String[]{"X25519MLKEM768", "x25519"};
-        } else if ("pqc".equalsIgnoreCase(mode) || "pqc-only".equalsIgnoreCase(mode)) {
-            namedGroups = new String[]{"MLKEM768"};
-        } else {
-            LOGGER.error("Unknown mode: {}", mode);
-            LOGGER.error("Usage: HybridTlsServer classical|hybrid|pqc [port]");
+        try {
+            provider = JsseProvider.parse(options.getOrDefault("provider", "sunjsse"));
+            namedGroups = GroupModes.forMode(mode);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error(e.getMessage());
+            LOGGER.error("Usage: HybridTlsServer classical|hybrid|pqc [port] [--prewarm[=rounds]] [--workers=n] [--rng=spec] [--hold[=sampleEvery]] [--keystore=file] [--provider=sunjsse|bcjsse] [--stream] [--groups]");
             System.exit(1);
             return;
         }
 
         LOGGER.info("Starting server in mode: {} on port {}", mode, port);
         HybridTlsServer server = new HybridTlsServer(port, namedGroups);
+        server.setJsseProvider(provider);
+        LOGGER.info("JSSE provider: {}", provider);
+        if (options.containsKey("prewarm")) {
+            String rounds = options.get("prewarm");
+            server.setPrewarmRounds(rounds.isEmpty() ? DEFAULT_PREWARM_ROUNDS : Integer.parseInt(rounds));
+        }
+        if (options.containsKey("workers")) {
+            server.setWorkerThreads(Integer.parseInt(options.get("workers")));
+        }
+        if (options.containsKey("hold")) {
+            String every = options.get("hold");
+            server.setHoldConnections(every.isEmpty() ? DEFAULT_HOLD_SAMPLE_EVERY : Integer.parseInt(every));
+        }
+        if (options.containsKey("stream")) {
+            server.setStreamEcho(true);
+        }
+        if (options.containsKey("groups")) {
+            // per-group latency breakdown on shutdown; taps every handshake on the wire
+            server.setGroupBreakdown(true);
+        }
+        if (options.containsKey("keystore")) {
+            // e.g. the full-chain keystore written by BenchPki; same password as server.keystore
+            char[] password = BenchPki.PASSWORD.toCharArray();
+            server.setKeyStore(KeyStore.getInstance(new File(options.get("keystore")), password), password);
+            LOGGER.info("Key store: {}", options.get("keystore"));
+        }
+        if (options.containsKey("rng")) {
+            server.setRandomStrategy(RandomStrategy.parse(options.get("rng")));
+            LOGGER.info("SecureRandom strategy: {}", options.get("rng"));
+        }
+        // print the per-group breakdown when the server is interrupted/killed
+        Runtime.getRuntime().addShutdownHook(new Thread(server::logGroupSummary, "server-summary"));
         server.start();
     }
 
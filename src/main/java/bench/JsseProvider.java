@@ -0,0 +1,210 @@
+package bench;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.lang.reflect.Method;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The JSSE implementation an {@link SSLContext} comes from. Spec strings accepted by
+ * {@link #parse(String)}:
+ * <ul>
+ *   <li>{@code sunjsse} — the JDK's provider (the default)</li>
+ *   <li>{@code bcjsse} — BouncyCastle JSSE on top of the BouncyCastle crypto provider; needs
+ *       {@code bctls} on the runtime classpath and is loaded reflectively</li>
+ * </ul>
+ *
+ * <p>Both take named groups per connection through {@code SSLParameters.setNamedGroups} (JDK 20+;
+ * bctls 1.79+ reads it reflectively), so nothing process-wide is changed to configure them.
+ *
+ * <p>Group names are matched case-insensitively against what the provider itself reports it can
+ * negotiate, and translated to the provider's spelling (e.g. SunJSSE's {@code x25519} vs IANA's
+ * {@code X25519}).
+ */
+final class JsseProvider {
+
+    static final String[] ALL = {"sunjsse", "bcjsse"};
+
+    private static final String BC_PROVIDER = "org.bouncycastle.jce.provider.BouncyCastleProvider";
+    private static final String BCJSSE_PROVIDER = "org.bouncycastle.jsse.provider.BouncyCastleJsseProvider";
+
+    private static final String BC_CRYPTO_PROVIDER = "org.bouncycastle.tls.crypto.impl.jcajce.JcaTlsCryptoProvider";
+    private static final String BC_TLS_CRYPTO = "org.bouncycastle.tls.crypto.TlsCrypto";
+    private static final String BC_NAMED_GROUP = "org.bouncycastle.tls.NamedGroup";
+    private static final String BC_PROTOCOL_VERSION = "org.bouncycastle.tls.ProtocolVersion";
+
+    /** Per provider name: group name (any case) to the provider's spelling; built once per JVM. */
+    private static final Map<String, Map<String, String>> GROUP_NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * bctls logs every connect/disconnect through java.util.logging at INFO, which would bury the
+     * benchmark output; held here so the level is not lost when the logger is collected.
+     */
+    private static final Logger BCJSSE_LOG = Logger.getLogger("org.bouncycastle.jsse");
+
+    private final String name;
+    private final Provider provider;
+
+    private JsseProvider(String name, Provider provider) {
+        this.name = name;
+        this.provider = provider;
+    }
+
+    static JsseProvider defaultProvider() {
+        return parse("sunjsse");
+    }
+
+    static JsseProvider parse(String spec) {
+        String normalized = spec.trim().toLowerCase();
+        switch (normalized) {
+            case "sunjsse":
+                return new JsseProvider(normalized, Security.getProvider("SunJSSE"));
+            case "bcjsse":
+                return new JsseProvider(normalized, loadBouncyCastleJsse());
+            default:
+                throw new IllegalArgumentException("Unknown JSSE provider: " + spec);
+        }
+    }
+
+    private static Provider loadBouncyCastleJsse() {
+        BCJSSE_LOG.setLevel(Level.WARNING);
+        try {
+            Provider bc = Security.getProvider("BC");
+            if (bc == null) {
+                bc = (Provider) Class.forName(BC_PROVIDER).getDeclaredConstructor().newInstance();
+                Security.addProvider(bc);
+            }
+            return (Provider) Class.forName(BCJSSE_PROVIDER).getConstructor(Provider.class).newInstance(bc);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("BouncyCastle JSSE is not on the classpath (bctls/bcprov): "
+                    + e.getMessage(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the BouncyCastle JSSE provider", e);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    /** Named groups this provider can negotiate for TLS 1.3, in its own naming. */
+    String[] supportedGroups() throws NoSuchAlgorithmException {
+        return groupNames().values().toArray(new String[0]);
+    }
+
+    /**
+     * Groups for a benchmark mode as this provider names them, dropping the ones it does not
+     * implement (keeps the mode's preference order; empty if none are left).
+     */
+    String[] groupsFor(String mode) throws NoSuchAlgorithmException {
+        return supportedOnly(GroupModes.forMode(mode));
+    }
+
+    /** {@code groups} in this provider's spelling, without the ones it cannot negotiate. */
+    String[] supportedOnly(String[] groups) throws NoSuchAlgorithmException {
+        Map<String, String> names = groupNames();
+        List<String> kept = new ArrayList<>();
+        for (String g : groups) {
+            String own = names.get(g);
+            if (own != null && !kept.contains(own)) {
+                kept.add(own);
+            }
+        }
+        return kept.toArray(new String[0]);
+    }
+
+    private Map<String, String> groupNames() throws NoSuchAlgorithmException {
+        Map<String, String> names = GROUP_NAMES.get(name);
+        if (names == null) {
+            names = "bcjsse".equals(name) ? bouncyCastleGroupNames() : reportedGroupNames();
+            GROUP_NAMES.putIfAbsent(name, names);
+        }
+        return names;
+    }
+
+    /** The groups a context from this provider reports in {@code getSupportedSSLParameters}. */
+    private Map<String, String> reportedGroupNames() throws NoSuchAlgorithmException {
+        SSLContext ctx = SSLContext.getInstance("TLS", provider);
+        try {
+            ctx.init(null, null, null);
+        } catch (KeyManagementException e) {
+            throw new IllegalStateException("Cannot initialize a " + name + " context", e);
+        }
+        Map<String, String> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String[] groups = ctx.getSupportedSSLParameters().getNamedGroups();
+        if (groups != null) {
+            for (String g : groups) {
+                names.put(g, g);
+            }
+        }
+        return Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * BCJSSE reports no named groups through {@code getSupportedSSLParameters}, so ask bctls: every
+     * code point its {@code NamedGroup} can negotiate in TLS 1.3 whose key exchange the JCA crypto
+     * implements (both halves for a hybrid). bctls is a runtime-only dependency, hence reflection.
+     */
+    private static Map<String, String> bouncyCastleGroupNames() {
+        try {
+            Class<?> namedGroup = Class.forName(BC_NAMED_GROUP);
+            Class<?> protocolVersion = Class.forName(BC_PROTOCOL_VERSION);
+            Object tls13 = protocolVersion.getField("TLSv13").get(null);
+            Method getName = namedGroup.getMethod("getName", int.class);
+            Method canBeNegotiated = namedGroup.getMethod("canBeNegotiated", int.class, protocolVersion);
+            Method isHybrid = namedGroup.getMethod("refersToASpecificHybrid", int.class);
+            Method hybridFirst = namedGroup.getMethod("getHybridFirst", int.class);
+            Method hybridSecond = namedGroup.getMethod("getHybridSecond", int.class);
+
+            Class<?> cryptoProviderClass = Class.forName(BC_CRYPTO_PROVIDER);
+            Object cryptoProvider = cryptoProviderClass.getConstructor().newInstance();
+            cryptoProviderClass.getMethod("setProvider", Provider.class).invoke(cryptoProvider, Security.getProvider("BC"));
+            Object crypto = cryptoProviderClass.getMethod("create", SecureRandom.class).invoke(cryptoProvider, new SecureRandom());
+            Method hasNamedGroup = Class.forName(BC_TLS_CRYPTO).getMethod("hasNamedGroup", int.class);
+
+            Map<String, String> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int g = 0; g <= 0xFFFF; g++) {
+                if (!(Boolean) canBeNegotiated.invoke(null, g, tls13)) {
+                    continue;
+                }
+                boolean implemented = (Boolean) isHybrid.invoke(null, g)
+                        ? (Boolean) hasNamedGroup.invoke(crypto, hybridFirst.invoke(null, g))
+                                && (Boolean) hasNamedGroup.invoke(crypto, hybridSecond.invoke(null, g))
+                        : (Boolean) hasNamedGroup.invoke(crypto, g);
+                if (implemented) {
+                    String groupName = (String) getName.invoke(null, g);
+                    names.put(groupName, groupName);
+                }
+            }
+            return Collections.unmodifiableMap(names);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot list the BouncyCastle JSSE named groups", e);
+        }
+    }
+
+    /** A TLS context from this provider; named groups are set on each socket by the caller. */
+    SSLContext newContext(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom random)
+            throws Exception {
+        SSLContext ctx = SSLContext.getInstance("TLS", provider);
+        ctx.init(keyManagers, trustManagers, random);
+        return ctx;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
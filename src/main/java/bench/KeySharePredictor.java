@@ -0,0 +1,29 @@
+package bench;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Client-side cache of the last group each server negotiated. On the next connection to the same
+ * server the cached group is moved to the front of the offer so its key share goes in the initial
+ * ClientHello, which avoids a HelloRetryRequest round trip when the server's preference differs
+ * from the client's default order.
+ */
+final class KeySharePredictor {
+
+    private final ConcurrentMap<String, String> lastGroup = new ConcurrentHashMap<>();
+
+    String[] order(String server, String[] groups) {
+        return GroupModes.withPreferred(groups, lastGroup.get(server));
+    }
+
+    void record(String server, String negotiatedGroup) {
+        if (negotiatedGroup != null) {
+            lastGroup.put(server, negotiatedGroup);
+        }
+    }
+
+    String predicted(String server) {
+        return lastGroup.get(server);
+    }
+}
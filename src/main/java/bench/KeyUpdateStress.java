@@ -0,0 +1,473 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSocket;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Security;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained bidirectional traffic over long-lived connections with TLS 1.3 KeyUpdates.
+ *
+ * <p>Every worker opens one connection to an in-process server in stream-echo mode and keeps
+ * {@code inflight} fixed-size records in flight for the whole run: a writer thread stamps each record
+ * with its send time, the server echoes it and the reader measures the round trip. Each time another
+ * {@code rekeyBytes} have been sent a rekey event is recorded:
+ * <ul>
+ *   <li>{@code forced} — the writer calls {@code startHandshake()} on the established connection,
+ *       which in SunJSSE sends a KeyUpdate (update_requested, so the server rekeys its side too)</li>
+ *   <li>{@code limit} — {@code jdk.tls.keyLimits} is lowered to {@code rekeyBytes} so JSSE's own
+ *       AES-GCM / ChaCha20 usage limit triggers the KeyUpdate; the event time is when that volume
+ *       was written, which is where JSSE rekeys. KeyUpdate messages are encrypted and JSSE does not
+ *       expose them, so these rekeys are estimated from the byte count, not observed, and are
+ *       reported as such</li>
+ * </ul>
+ * Around each event the report compares the worst record latency and the echoed throughput in the
+ * following {@code window} against the run's steady state, per negotiated cipher suite and group.
+ * The reader aggregates as records arrive (a latency histogram plus per-window counters), so memory
+ * stays constant however long the run.
+ */
+public class KeyUpdateStress {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyUpdateStress.class);
+    private static final String KEY_LIMITS_PROPERTY = "jdk.tls.keyLimits";
+    private static final int WARMUP_SECONDS = 2;
+    static final String[] TLS13_SUITES = {
+            "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"
+    };
+
+    public static void main(String[] args) throws Exception {
+        // Usage: KeyUpdateStress [seconds] [--workers=2] [--rekey=forced|limit] [--rekey-bytes=64m]
+        //        [--record-size=16k] [--inflight=8] [--window-ms=50] [--modes=classical,hybrid] [--suites=...]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int seconds = positional.isEmpty() ? 10 : Integer.parseInt(positional.get(0));
+        int workers = Integer.parseInt(options.getOrDefault("workers", "2"));
+        String rekey = options.getOrDefault("rekey", "forced").toLowerCase();
+        long rekeyBytes = parseBytes(options.getOrDefault("rekey-bytes", "64m"));
+        int recordSize = (int) parseBytes(options.getOrDefault("record-size", "16k"));
+        int inflight = Integer.parseInt(options.getOrDefault("inflight", "8"));
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.getOrDefault("window-ms", "50")));
+        String[] modes = options.containsKey("modes") ? options.get("modes").split(",") : GroupModes.SERVER_MODES;
+        String[] suites = options.containsKey("suites") ? options.get("suites").split(",") : TLS13_SUITES;
+        if (!"forced".equals(rekey) && !"limit".equals(rekey)) {
+            throw new IllegalArgumentException("Unknown rekey mode: " + rekey);
+        }
+        if (recordSize < Long.BYTES) {
+            throw new IllegalArgumentException("Record size must be at least " + Long.BYTES + " bytes");
+        }
+        if ("limit".equals(rekey)) {
+            // read once when JSSE initializes its ciphers, so it has to be set before the first handshake
+            Security.setProperty(KEY_LIMITS_PROPERTY, "AES/GCM/NoPadding KeyUpdate " + rekeyBytes
+                    + ", ChaCha20-Poly1305 KeyUpdate " + rekeyBytes);
+        }
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    KEYUPDATE STRESS");
+        LOGGER.info("===========================================");
+        LOGGER.info("Duration: {} s, workers: {}, rekey: {} every {} bytes, record size: {}, in flight: {}",
+                seconds, workers, rekey, rekeyBytes, recordSize, inflight);
+
+        List<Cell> cells = new ArrayList<>();
+        for (String mode : modes) {
+            String[] groups = GroupModes.supportedOnly(GroupModes.forMode(mode));
+            if (groups.length == 0) {
+                LOGGER.warn("Skipping mode {}: no supported named groups in this JVM", mode);
+                continue;
+            }
+            HybridTlsServer server = new HybridTlsServer(0, groups);
+            server.setStreamEcho(true);
+            server.setWorkerThreads(workers);
+            Thread serverThread = server.startInBackground("keyupdate-server-" + mode);
+            try {
+                // one unmeasured pass so the first suite is not the one paying for class loading and JIT
+                HybridTlsClient warmup = new HybridTlsClient("localhost", server.getPort(), groups);
+                warmup.setSessionResumption(false);
+                runCell(warmup, mode, workers, WARMUP_SECONDS, "forced".equals(rekey), rekeyBytes, recordSize,
+                        inflight, windowNanos);
+
+                for (String suite : suites) {
+                    HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), groups);
+                    client.setCipherSuites(new String[]{suite.trim()});
+                    client.setSessionResumption(false);
+                    Cell cell = runCell(client, mode, workers, seconds, "forced".equals(rekey), rekeyBytes,
+                            recordSize, inflight, windowNanos);
+                    cells.add(cell);
+                    LOGGER.info("{} / {} / {}: {} MB/s, {} rekeys{}", mode, cell.suite, cell.group,
+                            String.format("%.1f", cell.throughputMBps()), cell.rekeys,
+                            "limit".equals(rekey) ? " (estimated)" : "");
+                }
+            } finally {
+                server.stop();
+                serverThread.join(1000);
+            }
+        }
+
+        printCells(cells, rekey, windowNanos);
+    }
+
+    private static Cell runCell(HybridTlsClient client, String mode, int workers, int seconds, boolean forced,
+                                long rekeyBytes, int recordSize, int inflight, long windowNanos) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers * 2);
+        List<Stream> streams = new ArrayList<>();
+        try {
+            // the group is read off the wire on one probe connection, so the measured streams are untapped
+            client.setHandshakeTap(true);
+            String group = client.runSingleConnection().group;
+            client.setHandshakeTap(false);
+            for (int w = 0; w < workers; w++) {
+                List<SSLSocket> holder = new ArrayList<>(1);
+                client.connect(holder);
+                streams.add(new Stream(holder.get(0), group, recordSize, inflight, rekeyBytes, forced, windowNanos));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Stream s : streams) {
+                futures.add(executor.submit(() -> {
+                    s.write(deadline);
+                    return null;
+                }));
+                futures.add(executor.submit(() -> {
+                    s.read();
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(seconds + 60L, TimeUnit.SECONDS);
+            }
+        } finally {
+            for (Stream s : streams) {
+                s.close();
+            }
+            executor.shutdownNow();
+        }
+
+        Cell cell = new Cell(mode, streams.isEmpty() ? "-" : streams.get(0).socket.getSession().getCipherSuite(),
+                streams.isEmpty() ? "-" : streams.get(0).group);
+        for (Stream s : streams) {
+            cell.add(s, windowNanos);
+        }
+        return cell;
+    }
+
+    /** "64m", "16k", "1g" or a plain byte count. */
+    static long parseBytes(String value) {
+        String v = value.trim().toLowerCase();
+        long unit = 1;
+        char last = v.charAt(v.length() - 1);
+        if (last == 'k' || last == 'm' || last == 'g') {
+            unit = last == 'k' ? 1L << 10 : last == 'm' ? 1L << 20 : 1L << 30;
+            v = v.substring(0, v.length() - 1);
+        }
+        return Long.parseLong(v) * unit;
+    }
+
+    private static void printCells(List<Cell> cells, String rekey, long windowNanos) {
+        boolean estimated = "limit".equals(rekey);
+        LOGGER.info("");
+        LOGGER.info("Rekey windows: {} ms after each {} KeyUpdate", TimeUnit.NANOSECONDS.toMillis(windowNanos), rekey);
+        LOGGER.info(String.format("%-10s %-30s %-16s %-12s %-9s %-9s %-9s %-9s %-10s %-10s %-9s",
+                "Mode", "Cipher suite", "Group", estimated ? "Rekeys (est)" : "Rekeys", "MB/s", "Median", "p99", "Max",
+                "Spike max", "Spike x", "Dip %"));
+        LOGGER.info("-".repeat(140));
+        List<String> csv = new ArrayList<>();
+        for (Cell c : cells) {
+            LOGGER.info(String.format("%-10s %-30s %-16s %-12d %-9.1f %-9.3f %-9.3f %-9.3f %-10.3f %-10.2f %-9.1f",
+                    c.mode, c.suite, c.group, c.rekeys, c.throughputMBps(), c.median(), c.p99(), c.max(),
+                    c.meanSpikeMax(), c.spikeFactor(), c.dipPercent()));
+            csv.add(String.format("%s,%s,%s,%s,%d,%b,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.2f,%.1f,%.3f",
+                    c.mode, c.suite, c.group, rekey, c.rekeys, estimated, c.bytes, c.throughputMBps(), c.median(),
+                    c.p99(), c.max(), c.meanSpikeMax(), c.spikeFactor(), c.dipPercent(), c.meanRekeyCallMs()));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("Latencies are record round trips in ms. Spike max: mean over rekeys of the worst record in");
+        LOGGER.info("the window; Spike x: that over the steady-state median; Dip %: throughput lost in the window.");
+        if (estimated) {
+            LOGGER.info("Rekeys are where jdk.tls.keyLimits should trigger a KeyUpdate, estimated from bytes written;");
+            LOGGER.info("JSSE does not expose KeyUpdates, so they are not observed.");
+        } else {
+            LOGGER.info("Rekeys count startHandshake() calls; SunJSSE answers each with a KeyUpdate on TLS 1.3.");
+        }
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("mode,cipher_suite,group,rekey,rekeys,rekeys_estimated,bytes,throughput_mbps,median_ms,p99_ms,max_ms,spike_max_ms,spike_factor,dip_pct,rekey_call_ms");
+        for (String line : csv) {
+            LOGGER.info(line);
+        }
+    }
+
+    /**
+     * One long-lived connection: a writer keeps {@code inflight} timestamped records outstanding and
+     * rekeys every {@code rekeyBytes}; the reader aggregates the echoed records as they arrive. At the
+     * deadline the writer sends one record stamped {@link #END_OF_STREAM}, and the reader stops once
+     * that comes back.
+     *
+     * <p>The writer hands each rekey time to the reader, which keeps a window open for
+     * {@code windowNanos} from it and tracks the worst latency and record count inside. Only windows
+     * that end before the last echo count towards the spike and dip figures; a rekey right at the
+     * deadline has no traffic after it to measure.
+     */
+    static final class Stream {
+        static final long END_OF_STREAM = 0L;
+
+        final SSLSocket socket;
+        final String group;
+        private final int recordSize;
+        private final long rekeyBytes;
+        private final boolean forced;
+        private final long windowNanos;
+        private final Semaphore window;
+        private final Queue<Long> pendingRekeys = new ConcurrentLinkedQueue<>();
+
+        // written by the writer only
+        int rekeys;
+        long rekeyCallNanos;
+
+        // written by the reader only
+        final LatencyHistogram latencies = new LatencyHistogram();
+        private final Deque<RekeyWindow> openWindows = new ArrayDeque<>();
+        long records;
+        long firstReceived;
+        long lastReceived;
+        // records received inside at least one rekey window, and the time those windows cover
+        long windowedRecords;
+        long windowedNanos;
+        private long coveredUntil;
+        // complete windows: how many, their summed worst latency (ms) and record count
+        int windows;
+        double windowWorstMsSum;
+        long windowRecordsSum;
+
+        Stream(SSLSocket socket, String group, int recordSize, int inflight, long rekeyBytes, boolean forced,
+               long windowNanos) {
+            this.socket = socket;
+            this.group = group;
+            this.recordSize = recordSize;
+            this.rekeyBytes = rekeyBytes;
+            this.forced = forced;
+            this.windowNanos = windowNanos;
+            this.window = new Semaphore(inflight);
+        }
+
+        void write(long deadline) throws IOException, InterruptedException {
+            OutputStream out = socket.getOutputStream();
+            byte[] record = new byte[recordSize];
+            long sentBytes = 0;
+            long nextRekey = rekeyBytes;
+            while (System.nanoTime() < deadline) {
+                if (!window.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                stamp(record, System.nanoTime());
+                out.write(record);
+                out.flush();
+                sentBytes += recordSize;
+                if (sentBytes >= nextRekey) {
+                    nextRekey += rekeyBytes;
+                    long start = System.nanoTime();
+                    pendingRekeys.add(start);
+                    rekeys++;
+                    if (forced) {
+                        socket.startHandshake();
+                        rekeyCallNanos += System.nanoTime() - start;
+                    }
+                }
+            }
+            // echoed after every record still in flight, so the reader has seen them all when it gets this
+            stamp(record, END_OF_STREAM);
+            out.write(record);
+            out.flush();
+        }
+
+        private static void stamp(byte[] record, long value) {
+            for (int i = 0; i < Long.BYTES; i++) {
+                record[i] = (byte) (value >>> (56 - 8 * i));
+            }
+        }
+
+        void read() throws IOException {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] record = new byte[recordSize];
+            while (true) {
+                in.readFully(record);
+                long now = System.nanoTime();
+                long sent = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    sent = (sent << 8) | (record[i] & 0xff);
+                }
+                if (sent == END_OF_STREAM) {
+                    finish();
+                    return;
+                }
+                received(sent, now);
+                window.release();
+            }
+        }
+
+        private void received(long sent, long now) {
+            if (records == 0) {
+                firstReceived = now;
+                coveredUntil = now;
+            }
+            records++;
+            lastReceived = now;
+            double latencyMs = (now - sent) / 1e6;
+            latencies.record(latencyMs);
+
+            // rekeys are queued in time order; open a window for each one that has started
+            Long at;
+            while ((at = pendingRekeys.peek()) != null && at <= now) {
+                pendingRekeys.poll();
+                openWindows.add(new RekeyWindow(at + windowNanos));
+                cover(Math.max(at, coveredUntil), at + windowNanos);
+            }
+            while (!openWindows.isEmpty() && openWindows.peek().end <= now) {
+                RekeyWindow done = openWindows.poll();
+                windows++;
+                windowWorstMsSum += done.worstMs;
+                windowRecordsSum += done.records;
+            }
+            for (RekeyWindow w : openWindows) {
+                w.worstMs = Math.max(w.worstMs, latencyMs);
+                w.records++;
+            }
+            if (!openWindows.isEmpty()) {
+                windowedRecords++;
+            }
+        }
+
+        /** Windows still open at the last echo are cut off there and left out of the per-window figures. */
+        private void finish() {
+            if (coveredUntil > lastReceived) {
+                windowedNanos -= coveredUntil - lastReceived;
+            }
+            openWindows.clear();
+        }
+
+        private void cover(long from, long to) {
+            if (to > from) {
+                windowedNanos += to - from;
+                coveredUntil = to;
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing stream connection: {}", e.toString());
+            }
+        }
+    }
+
+    /** A rekey window being filled by the reader. */
+    private static final class RekeyWindow {
+        final long end;
+        double worstMs;
+        long records;
+
+        RekeyWindow(long end) {
+            this.end = end;
+        }
+    }
+
+    /** Results for one (mode, cipher suite, group), pooled over the workers' connections. */
+    static final class Cell {
+        final String mode;
+        final String suite;
+        final String group;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long bytes;
+        double seconds;
+        int connections;
+        // sum of the connections' throughput outside rekey windows
+        double steadyThroughput;
+        int rekeys;
+        int windows;
+        double windowWorstMsSum;
+        // sum over complete windows of their throughput in bytes/s
+        double windowThroughputSum;
+        long rekeyCallNanos;
+
+        Cell(String mode, String suite, String group) {
+            this.mode = mode;
+            this.suite = suite;
+            this.group = group;
+        }
+
+        void add(Stream s, long windowNanos) {
+            rekeys += s.rekeys;
+            rekeyCallNanos += s.rekeyCallNanos;
+            if (s.records == 0) {
+                return;
+            }
+            long span = s.lastReceived - s.firstReceived;
+            connections++;
+            bytes += s.records * s.recordSize;
+            seconds = Math.max(seconds, Math.max(1e-9, span / 1e9));
+            latencies.add(s.latencies);
+
+            windows += s.windows;
+            windowWorstMsSum += s.windowWorstMsSum;
+            windowThroughputSum += (double) s.windowRecordsSum * s.recordSize / (windowNanos / 1e9);
+
+            long steadyNanos = span - s.windowedNanos;
+            if (steadyNanos > 0) {
+                steadyThroughput += (s.records - s.windowedRecords) * s.recordSize / (steadyNanos / 1e9);
+            }
+        }
+
+        double throughputMBps() {
+            return seconds > 0 ? bytes / seconds / (1 << 20) : 0;
+        }
+
+        double median() {
+            return latencies.percentile(50);
+        }
+
+        double p99() {
+            return latencies.percentile(99);
+        }
+
+        double max() {
+            return latencies.max();
+        }
+
+        double meanSpikeMax() {
+            return windows > 0 ? windowWorstMsSum / windows : 0;
+        }
+
+        double spikeFactor() {
+            double median = median();
+            return median > 0 ? meanSpikeMax() / median : 0;
+        }
+
+        /** Throughput lost inside the rekey windows relative to the per-connection steady state. */
+        double dipPercent() {
+            if (windows == 0 || steadyThroughput <= 0) {
+                return 0;
+            }
+            return (1 - (windowThroughputSum / windows) / (steadyThroughput / connections)) * 100;
+        }
+
+        double meanRekeyCallMs() {
+            return rekeys > 0 ? rekeyCallNanos / 1e6 / rekeys : 0;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+/**
+ * Fixed-size latency histogram in milliseconds, so long runs aggregate in constant memory instead of
+ * keeping every sample.
+ *
+ * <p>Buckets grow geometrically by {@link #PRECISION} from {@link #MIN_MS} to {@link #MAX_MS}, so a
+ * percentile is accurate to within about 1% of its value; values outside the range land in the first
+ * or last bucket. Count, sum, min and max are exact. Not thread-safe: callers record from one thread
+ * or synchronize.
+ */
+final class LatencyHistogram {
+
+    static final double MIN_MS = 0.001;
+    static final double MAX_MS = 600_000;
+    static final double PRECISION = 0.01;
+    private static final double LOG_BASE = Math.log1p(PRECISION);
+    private static final int BUCKETS = (int) Math.ceil(Math.log(MAX_MS / MIN_MS) / LOG_BASE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private double sum;
+    private double min = Double.MAX_VALUE;
+    private double max;
+
+    void record(double millis) {
+        counts[bucket(millis)]++;
+        count++;
+        sum += millis;
+        min = Math.min(min, millis);
+        max = Math.max(max, millis);
+    }
+
+    /** Add every value recorded in {@code other}. */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    double min() {
+        return count > 0 ? min : 0;
+    }
+
+    double max() {
+        return max;
+    }
+
+    /** Value at percentile {@code p} (0-100): the geometric midpoint of its bucket, clamped to [min, max]. */
+    double percentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        // same rank as HybridTlsClient.percentile without interpolation
+        long rank = (long) Math.floor(p / 100.0 * (count - 1));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double value = MIN_MS * Math.exp((i + 0.5) * LOG_BASE);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(double millis) {
+        if (millis <= MIN_MS) {
+            return 0;
+        }
+        int i = (int) (Math.log(millis / MIN_MS) / LOG_BASE);
+        return Math.min(i, BUCKETS - 1);
+    }
+}
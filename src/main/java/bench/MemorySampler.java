@@ -0,0 +1,151 @@
+package bench;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples process memory while idle TLS connections ramp up and turns the samples into bytes per
+ * connection (least-squares slope of each metric against the connection count).
+ *
+ * <p>Heap is measured after explicit GCs so it reflects retained state only. Native memory is
+ * approximated by direct buffer pool usage, JVM non-heap usage and the process RSS
+ * ({@code /proc/self/status}, Linux only; -1 elsewhere).
+ *
+ * <p>The samples are only as clean as the process holding the connections: it should keep no
+ * per-connection bookkeeping beyond a reference to each socket (see
+ * {@link HybridTlsServer#setHoldConnections}).
+ */
+final class MemorySampler {
+
+    private static final int GC_PASSES = 3;
+
+    private final List<Sample> samples = new ArrayList<>();
+
+    /**
+     * Take a sample with {@code connections} live connections out of {@code accepted} so far; logs a
+     * {@code HOLD_SAMPLE} line. {@code label} names what is being held (e.g. the configured groups).
+     */
+    synchronized Sample sample(int connections, int accepted, String label, Logger logger) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < GC_PASSES; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Sample s = new Sample();
+        s.connections = connections;
+        s.accepted = accepted;
+        s.label = label;
+        s.heap = memory.getHeapMemoryUsage().getUsed();
+        s.nonHeap = memory.getNonHeapMemoryUsage().getUsed();
+        s.direct = directMemoryUsed();
+        s.rss = residentSetSize();
+        samples.add(s);
+        logger.info("HOLD_SAMPLE connections={} accepted={} heap={} nonheap={} direct={} rss={} label={}",
+                s.connections, s.accepted, s.heap, s.nonHeap, s.direct, s.rss, s.label);
+        return s;
+    }
+
+    synchronized List<Sample> samples() {
+        return new ArrayList<>(samples);
+    }
+
+    /** Log bytes per idle connection for every metric, labeled with the sample label. */
+    void logSummary(Logger logger) {
+        List<Sample> all = samples();
+        if (all.size() < 2) {
+            logger.info("Not enough memory samples for a per-connection estimate ({} taken)", all.size());
+            return;
+        }
+        Sample last = all.get(all.size() - 1);
+        String group = last.label;
+        logger.info("");
+        logger.info("--- Memory per idle connection ({} samples, {} live connections, groups {}) ---",
+                all.size(), last.connections, group);
+        logger.info(String.format("  Heap (after GC): %.0f bytes", slope(all, "heap")));
+        logger.info(String.format("  Direct buffers:  %.0f bytes", slope(all, "direct")));
+        logger.info(String.format("  Non-heap:        %.0f bytes", slope(all, "nonheap")));
+        logger.info(String.format("  Process RSS:     %.0f bytes", slope(all, "rss")));
+        logger.info("HOLD_CSV_OUTPUT:");
+        logger.info("group,connections,heap_bytes_per_conn,direct_bytes_per_conn,nonheap_bytes_per_conn,rss_bytes_per_conn");
+        logger.info(String.format("%s,%d,%.0f,%.0f,%.0f,%.0f", group, last.connections,
+                slope(all, "heap"), slope(all, "direct"), slope(all, "nonheap"), slope(all, "rss")));
+    }
+
+    /** Least-squares slope of {@code metric} against connection count, in bytes per connection. */
+    static double slope(List<Sample> samples, String metric) {
+        int n = samples.size();
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (Sample s : samples) {
+            double x = s.connections;
+            double y = s.value(metric);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        double denom = n * sxx - sx * sx;
+        return denom == 0 ? 0 : (n * sxy - sx * sy) / denom;
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return -1;
+    }
+
+    private static long residentSetSize() {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try (BufferedReader br = Files.newBufferedReader(status)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    String kb = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available on this platform
+        }
+        return -1;
+    }
+
+    static final class Sample {
+        int connections;
+        int accepted;
+        String label;
+        long heap;
+        long nonHeap;
+        long direct;
+        long rss;
+
+        double value(String metric) {
+            switch (metric) {
+                case "heap": return heap;
+                case "nonheap": return nonHeap;
+                case "direct": return direct;
+                case "rss": return rss;
+                default: throw new IllegalArgumentException("Unknown metric: " + metric);
+            }
+        }
+    }
+}
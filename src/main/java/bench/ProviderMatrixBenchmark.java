@@ -0,0 +1,212 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handshake latency and throughput for every server provider × client provider × mode, including
+ * cross-provider pairings, to find the fastest interoperable JSSE stack.
+ *
+ * <p>Each side offers the mode's groups that its provider implements (see
+ * {@link JsseProvider#groupsFor}); a cell is skipped when the two sides share none. A cell is
+ * labeled with its mode only if every handshake negotiated the mode's primary group (e.g.
+ * {@code X25519MLKEM768} for hybrid); otherwise it is labeled with the group(s) actually negotiated,
+ * so a provider falling back to x25519 never shows up as a hybrid result. Session resumption is off
+ * because the providers resume differently, which would otherwise dominate the comparison. A cell
+ * where every handshake fails is reported as not interoperable.
+ */
+public class ProviderMatrixBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderMatrixBenchmark.class);
+    private static final int WARMUP_HANDSHAKES = 50;
+
+    public static void main(String[] args) throws Exception {
+        // Usage: ProviderMatrixBenchmark [runsPerThread] [--concurrency=4] [--modes=classical,hybrid,pqc] [--providers=sunjsse,bcjsse]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int runsPerThread = positional.isEmpty() ? 50 : Integer.parseInt(positional.get(0));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "4"));
+        String[] modes = options.containsKey("modes") ? options.get("modes").split(",") : GroupModes.SERVER_MODES;
+        String[] specs = options.containsKey("providers") ? options.get("providers").split(",") : JsseProvider.ALL;
+
+        List<JsseProvider> providers = new ArrayList<>();
+        for (String spec : specs) {
+            try {
+                providers.add(JsseProvider.parse(spec));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Skipping provider {}: {}", spec, e.getMessage());
+            }
+        }
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    JSSE PROVIDER MATRIX");
+        LOGGER.info("===========================================");
+        LOGGER.info("Providers: {}, modes: {}, concurrency: {}, runs per thread: {}",
+                providers, Arrays.toString(modes), concurrency, runsPerThread);
+
+        List<Row> rows = new ArrayList<>();
+        for (String mode : modes) {
+            for (JsseProvider serverProvider : providers) {
+                for (JsseProvider clientProvider : providers) {
+                    String[] serverGroups = serverProvider.groupsFor(mode);
+                    String[] groups = clientProvider.supportedOnly(serverGroups);
+                    if (groups.length == 0) {
+                        LOGGER.warn("Skipping {} server={} client={}: no common implemented group", mode,
+                                serverProvider, clientProvider);
+                        continue;
+                    }
+                    rows.add(measure(mode, serverProvider, serverGroups, clientProvider, groups,
+                            concurrency, runsPerThread));
+                }
+            }
+        }
+
+        printRows(rows);
+    }
+
+    private static Row measure(String mode, JsseProvider serverProvider, String[] serverGroups,
+                               JsseProvider clientProvider, String[] clientGroups, int concurrency,
+                               int runsPerThread) throws Exception {
+        Row row = new Row(mode, GroupModes.forMode(mode)[0], serverProvider.name(), clientProvider.name());
+        HybridTlsServer server = new HybridTlsServer(0, serverGroups);
+        server.setJsseProvider(serverProvider);
+        server.setWorkerThreads(concurrency);
+        Thread serverThread = server.startInBackground("matrix-server-" + serverProvider);
+        try {
+            HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), clientGroups);
+            client.setJsseProvider(clientProvider);
+            client.setSessionResumption(false);
+            client.setHandshakeTap(true);
+            for (int i = 0; i < WARMUP_HANDSHAKES; i++) {
+                try {
+                    client.runSingleConnection();
+                } catch (Exception e) {
+                    row.error = e.toString();
+                    LOGGER.warn("{} server={} client={}: warm-up handshake failed: {}", mode, serverProvider,
+                            clientProvider, row.error);
+                    row.failures = concurrency * runsPerThread;
+                    return row;
+                }
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+            List<Double> times = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger failures = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(concurrency);
+            long start = System.nanoTime();
+            for (int t = 0; t < concurrency; t++) {
+                executor.submit(() -> {
+                    try {
+                        for (int i = 0; i < runsPerThread; i++) {
+                            try {
+                                HybridTlsClient.Handshake h = client.runSingleConnection();
+                                times.add(h.millis);
+                                row.negotiated.add(h.group != null ? h.group : "unknown");
+                            } catch (Exception e) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            latch.await(10, TimeUnit.MINUTES);
+            executor.shutdown();
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            List<Double> sorted = new ArrayList<>(times);
+            Collections.sort(sorted);
+            row.failures = failures.get();
+            row.success = sorted.size();
+            if (!sorted.isEmpty()) {
+                double sum = 0;
+                for (double v : sorted) sum += v;
+                row.mean = sum / sorted.size();
+                row.median = HybridTlsClient.percentile(sorted, 50);
+                row.p99 = HybridTlsClient.percentile(sorted, 99);
+                row.throughput = sorted.size() / seconds;
+            }
+        } finally {
+            server.stop();
+            serverThread.join(1000);
+        }
+        LOGGER.info("{} server={} client={} negotiated={}: {} handshakes/s", mode, serverProvider, clientProvider,
+                row.negotiatedGroups(), String.format("%.1f", row.throughput));
+        return row;
+    }
+
+    private static void printRows(List<Row> rows) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-18s %-9s %-9s %-18s %-18s %-8s %-6s %-10s %-10s %-10s %-10s",
+                "Cell", "Server", "Client", "Requested", "Negotiated", "OK", "Fail", "Mean", "Median", "p99", "HS/s"));
+        LOGGER.info("-".repeat(132));
+        for (Row r : rows) {
+            if (r.success == 0) {
+                LOGGER.info(String.format("%-18s %-9s %-9s %-18s not interoperable: %s",
+                        r.mode, r.server, r.client, r.requested, r.error != null ? r.error : "all handshakes failed"));
+                continue;
+            }
+            LOGGER.info(String.format("%-18s %-9s %-9s %-18s %-18s %-8d %-6d %-10.3f %-10.3f %-10.3f %-10.1f",
+                    r.label(), r.server, r.client, r.requested, r.negotiatedGroups(), r.success, r.failures,
+                    r.mean, r.median, r.p99, r.throughput));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("cell,mode,requested_group,negotiated_group,server_provider,client_provider,success,fail,mean_ms,median_ms,p99_ms,throughput");
+        for (Row r : rows) {
+            LOGGER.info(String.format("%s,%s,%s,%s,%s,%s,%d,%d,%.3f,%.3f,%.3f,%.2f",
+                    r.success == 0 ? r.mode : r.label(), r.mode, r.requested, r.negotiatedGroups(), r.server, r.client,
+                    r.success, r.failures, r.mean, r.median, r.p99, r.throughput));
+        }
+    }
+
+    static class Row {
+        final String mode;
+        // the mode's primary group: what the cell is meant to measure
+        final String requested;
+        final String server;
+        final String client;
+        final Set<String> negotiated = new ConcurrentSkipListSet<>();
+        int success;
+        int failures;
+        double mean;
+        double median;
+        double p99;
+        double throughput;
+        String error;
+
+        Row(String mode, String requested, String server, String client) {
+            this.mode = mode;
+            this.requested = requested;
+            this.server = server;
+            this.client = client;
+        }
+
+        String negotiatedGroups() {
+            return negotiated.isEmpty() ? "-" : String.join("/", negotiated);
+        }
+
+        /** The mode if every handshake got the requested group, else what was actually negotiated. */
+        String label() {
+            if (negotiated.size() == 1 && negotiated.contains(requested)) {
+                return mode;
+            }
+            return negotiatedGroups();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package bench;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handshake throughput scaling per {@link RandomStrategy}.
+ *
+ * <p>For each strategy an in-process server (with a worker pool as large as the highest thread
+ * count) and a client are built with that strategy, then the client runs {@code threads x runs}
+ * handshakes for every thread count. Next to handshakes/s the report shows the scaling factor
+ * relative to one thread and the raw {@code nextBytes(32)} rate of one shared instance at the same
+ * thread count, which isolates RNG contention from the rest of the handshake.
+ */
+public class RandomContentionBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RandomContentionBenchmark.class);
+    private static final int WARMUP_HANDSHAKES = 100;
+    private static final long RAW_RNG_MILLIS = 500;
+
+    public static void main(String[] args) throws Exception {
+        // Usage: RandomContentionBenchmark [runsPerThread] [--threads=1,2,4] [--strategies=default,drbg:256] [--mode=hybrid]
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+        int runsPerThread = positional.isEmpty() ? 200 : Integer.parseInt(positional.get(0));
+        String mode = options.getOrDefault("mode", "hybrid");
+        String[] strategies = options.containsKey("strategies")
+                ? options.get("strategies").split(",") : RandomStrategy.ALL;
+        List<Integer> threadCounts = new ArrayList<>();
+        if (options.containsKey("threads")) {
+            for (String t : options.get("threads").split(",")) {
+                int threads = Integer.parseInt(t.trim());
+                if (!threadCounts.contains(threads)) threadCounts.add(threads);
+            }
+            if (!threadCounts.contains(1)) {
+                // scaling is measured against one thread, not extrapolated from a higher count
+                throw new IllegalArgumentException("--threads must include 1: " + options.get("threads"));
+            }
+            Collections.sort(threadCounts);
+        } else {
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int t = 1; t < cores; t *= 2) threadCounts.add(t);
+            threadCounts.add(cores);
+        }
+        int maxThreads = Collections.max(threadCounts);
+
+        String[] groups = GroupModes.supportedOnly(GroupModes.forMode(mode));
+        if (groups.length == 0) {
+            LOGGER.error("No supported named groups for mode {} in this JVM", mode);
+            System.exit(1);
+        }
+
+        LOGGER.info("===========================================");
+        LOGGER.info("    SECURERANDOM STRATEGY SCALING");
+        LOGGER.info("===========================================");
+        LOGGER.info("Mode: {} ({}), cores: {}, thread counts: {}, runs per thread: {}", mode,
+                String.join(", ", groups), Runtime.getRuntime().availableProcessors(), threadCounts, runsPerThread);
+
+        List<Row> rows = new ArrayList<>();
+        for (String spec : strategies) {
+            RandomStrategy strategy;
+            try {
+                strategy = RandomStrategy.parse(spec);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Skipping strategy {}: {}", spec, e.toString());
+                continue;
+            }
+
+            HybridTlsServer server = new HybridTlsServer(0, groups);
+            server.setRandomStrategy(strategy);
+            server.setWorkerThreads(maxThreads);
+            Thread serverThread = server.startInBackground("rng-server-" + spec);
+            try {
+                HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), ClientMix.of(groups), null);
+                client.setRandomStrategy(strategy);
+                for (int i = 0; i < WARMUP_HANDSHAKES; i++) {
+                    client.runSingleConnection();
+                }
+                for (int threads : threadCounts) {
+                    Row row = measureHandshakes(client, spec, threads, runsPerThread);
+                    row.rawRngOpsPerSec = measureRawRng(strategy.create(), threads);
+                    rows.add(row);
+                    LOGGER.info("{} x{}: {} handshakes/s", spec, threads, String.format("%.1f", row.throughput));
+                }
+            } finally {
+                server.stop();
+                serverThread.join(1000);
+            }
+        }
+
+        printRows(rows);
+    }
+
+    private static Row measureHandshakes(HybridTlsClient client, String strategy, int threads,
+                                         int runsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Double> times = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < runsPerThread; i++) {
+                        try {
+                            times.add(client.runSingleConnection().millis);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(10, TimeUnit.MINUTES);
+        executor.shutdown();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        Row row = new Row(strategy, threads);
+        List<Double> sorted = new ArrayList<>(times);
+        Collections.sort(sorted);
+        row.throughput = sorted.size() / seconds;
+        row.p99 = sorted.isEmpty() ? 0 : HybridTlsClient.percentile(sorted, 99);
+        row.failures = failures.get();
+        return row;
+    }
+
+    /** nextBytes(32) calls per second on one shared instance from {@code threads} threads. */
+    private static double measureRawRng(SecureRandom random, int threads) throws InterruptedException {
+        AtomicLong ops = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RAW_RNG_MILLIS);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                byte[] buf = new byte[32];
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    random.nextBytes(buf);
+                    n++;
+                }
+                ops.addAndGet(n);
+            }, "raw-rng-" + t);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+        return ops.get() / (RAW_RNG_MILLIS / 1000.0);
+    }
+
+    private static void printRows(List<Row> rows) {
+        LOGGER.info("");
+        LOGGER.info(String.format("%-30s %-8s %-12s %-10s %-12s %-10s %-14s",
+                "Strategy", "Threads", "HS/s", "Scaling", "Efficiency", "p99 ms", "Raw RNG op/s"));
+        LOGGER.info("-".repeat(102));
+        double base = 0;
+        String current = null;
+        List<String> csv = new ArrayList<>();
+        for (Row r : rows) {
+            if (!r.strategy.equals(current)) {
+                // thread counts are sorted and always include 1, so this is the one-thread row
+                current = r.strategy;
+                base = r.throughput;
+            }
+            double scaling = base > 0 ? r.throughput / base : 0;
+            LOGGER.info(String.format("%-30s %-8d %-12.1f %-10.2f %-12.2f %-10.3f %-14.0f",
+                    r.strategy, r.threads, r.throughput, scaling, scaling / r.threads, r.p99, r.rawRngOpsPerSec));
+            csv.add(String.format("%s,%d,%.1f,%.2f,%.3f,%d,%.0f",
+                    r.strategy, r.threads, r.throughput, scaling, r.p99, r.failures, r.rawRngOpsPerSec));
+        }
+
+        LOGGER.info("");
+        LOGGER.info("CSV_OUTPUT:");
+        LOGGER.info("strategy,threads,throughput,scaling,p99_ms,fail,raw_rng_ops_per_sec");
+        for (String line : csv) {
+            LOGGER.info(line);
+        }
+    }
+
+    static class Row {
+        final String strategy;
+        final int threads;
+        double throughput;
+        double p99;
+        long failures;
+        double rawRngOpsPerSec;
+
+        Row(String strategy, int threads) {
+            this.strategy = strategy;
+            this.threads = threads;
+        }
+    }
+}
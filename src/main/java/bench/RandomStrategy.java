@@ -0,0 +1,196 @@
+package bench;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.SecureRandomParameters;
+import java.util.Arrays;
+
+/**
+ * How the {@link SecureRandom} handed to {@code SSLContext.init} is built. JSSE draws all handshake
+ * randomness (hello randoms, X25519 / ML-KEM key generation and encapsulation) from that single
+ * instance, so under high concurrency its internal locking can become a contention point.
+ *
+ * <p>Spec strings accepted by {@link #parse(String)}:
+ * <ul>
+ *   <li>{@code default} — {@code new SecureRandom()} (the JDK's preferred algorithm)</li>
+ *   <li>{@code drbg[:strength[:capability]]} — {@code DRBG} with {@link DrbgParameters#instantiation};
+ *       capability is {@code none}, {@code reseed_only} or {@code pr_and_reseed}</li>
+ *   <li>{@code nativeprng-nonblocking} — {@code NativePRNGNonBlocking} (/dev/urandom, Unix only)</li>
+ *   <li>{@code per-thread[:inner-spec]} — one instance of the inner strategy (default {@code default})
+ *       per calling thread behind a single {@code SecureRandom} facade</li>
+ * </ul>
+ */
+final class RandomStrategy {
+
+    static final String[] ALL = {"default", "drbg", "nativeprng-nonblocking", "per-thread"};
+
+    // new SecureRandom() cannot fail, so the default needs no validation instance
+    private static final RandomStrategy DEFAULT = new RandomStrategy("default", "default", new String[0], null);
+
+    private final String spec;
+    private final String kind;
+    private final String[] params;
+    // per-thread only: the strategy each thread's delegate is built with
+    private final RandomStrategy inner;
+
+    private RandomStrategy(String spec, String kind, String[] params, RandomStrategy inner) {
+        this.spec = spec;
+        this.kind = kind;
+        this.params = params;
+        this.inner = inner;
+    }
+
+    static RandomStrategy defaultStrategy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Parses and validates a spec. Every strategy is instantiated once here, so a bad DRBG strength
+     * or capability, or an algorithm this platform lacks, fails at startup with an
+     * {@link IllegalArgumentException} instead of later inside {@code SSLContext.init}.
+     */
+    static RandomStrategy parse(String spec) {
+        String normalized = spec.trim().toLowerCase();
+        int colon = normalized.indexOf(':');
+        String kind = colon < 0 ? normalized : normalized.substring(0, colon);
+        String[] params = colon < 0 ? new String[0] : normalized.substring(colon + 1).split(":");
+        switch (kind) {
+            case "default":
+                if (params.length == 0) {
+                    return DEFAULT;
+                }
+                throw new IllegalArgumentException("SecureRandom strategy " + kind + " takes no parameters: " + spec);
+            case "nativeprng-nonblocking":
+                if (params.length > 0) {
+                    throw new IllegalArgumentException("SecureRandom strategy " + kind + " takes no parameters: " + spec);
+                }
+                break;
+            case "drbg":
+                if (params.length > 2) {
+                    throw new IllegalArgumentException("Expected drbg[:strength[:capability]]: " + spec);
+                }
+                break;
+            case "per-thread":
+                // the inner spec is parsed (and so validated) here; the facade adds nothing that can fail
+                return new RandomStrategy(normalized, kind, params, parse(innerSpec(normalized)));
+            default:
+                throw new IllegalArgumentException("Unknown SecureRandom strategy: " + spec);
+        }
+        if (params.length >= 2 && !Arrays.asList("none", "reseed_only", "pr_and_reseed").contains(params[1])) {
+            throw new IllegalArgumentException("Unknown DRBG capability '" + params[1]
+                    + "' (expected none, reseed_only or pr_and_reseed): " + spec);
+        }
+        RandomStrategy strategy = new RandomStrategy(normalized, kind, params, null);
+        try {
+            strategy.create();
+        } catch (NoSuchAlgorithmException | IllegalArgumentException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) cause = cause.getCause();
+            throw new IllegalArgumentException("Invalid SecureRandom strategy '" + spec + "': " + cause.getMessage(), e);
+        }
+        return strategy;
+    }
+
+    SecureRandom create() throws NoSuchAlgorithmException {
+        switch (kind) {
+            case "drbg":
+                int strength = params.length >= 1 ? Integer.parseInt(params[0]) : 128;
+                DrbgParameters.Capability capability = params.length >= 2
+                        ? DrbgParameters.Capability.valueOf(params[1].toUpperCase())
+                        : DrbgParameters.Capability.NONE;
+                return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(strength, capability, null));
+            case "nativeprng-nonblocking":
+                return SecureRandom.getInstance("NativePRNGNonBlocking");
+            case "per-thread":
+                return new PerThreadSecureRandom(inner);
+            default:
+                return new SecureRandom();
+        }
+    }
+
+    private static String innerSpec(String spec) {
+        int colon = spec.indexOf(':');
+        return colon < 0 ? "default" : spec.substring(colon + 1);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * {@link SecureRandom} facade that gives every calling thread its own delegate, removing the
+     * shared-instance lock from the handshake path.
+     */
+    static final class PerThreadSecureRandom extends SecureRandom {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ThreadLocal<SecureRandom> delegate;
+        private final String algorithm;
+
+        PerThreadSecureRandom(RandomStrategy inner) throws NoSuchAlgorithmException {
+            this.algorithm = "PerThread(" + inner.create().getAlgorithm() + ")";
+            this.delegate = ThreadLocal.withInitial(() -> {
+                try {
+                    return inner.create();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        /* package-private for tests: the calling thread's delegate */
+        SecureRandom current() {
+            return delegate.get();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            delegate.get().nextBytes(bytes);
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes, SecureRandomParameters params) {
+            delegate.get().nextBytes(bytes, params);
+        }
+
+        @Override
+        public byte[] generateSeed(int numBytes) {
+            return delegate.get().generateSeed(numBytes);
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+            delegate.get().setSeed(seed);
+        }
+
+        @Override
+        public void setSeed(long seed) {
+            // called from the java.util.Random constructor before the delegate exists
+            if (delegate != null) {
+                delegate.get().setSeed(seed);
+            }
+        }
+
+        @Override
+        public void reseed() {
+            delegate.get().reseed();
+        }
+
+        @Override
+        public void reseed(SecureRandomParameters params) {
+            delegate.get().reseed(params);
+        }
+
+        @Override
+        public String toString() {
+            return algorithm;
+        }
+    }
+}
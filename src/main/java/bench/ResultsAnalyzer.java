@@ -10,8 +10,58 @@ import java.util.*;
 public class ResultsAnalyzer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ResultsAnalyzer.class);
+    // compare exit statuses
+    static final int EXIT_OK = 0;
+    static final int EXIT_REGRESSION = 1;
+    static final int EXIT_NOTHING_COMPARED = 2;
+    static final int EXIT_UNKNOWN_BASELINE = 3;
+    private static final String USAGE =
+            "Usage: ResultsAnalyzer [list | baseline <name> [runId...] | compare <name> [runId...]] [--store=dir]";
 
     public static void main(String[] args) throws Exception {
+        // Usage: ResultsAnalyzer                                     (summarize results/raw/*)
+        //        ResultsAnalyzer list [--store=dir]
+        //        ResultsAnalyzer baseline <name> [runId...] [--store=dir]
+        //        ResultsAnalyzer compare <name> [runId...] [--p99-threshold=pct] [--throughput-threshold=pct] [--store=dir]
+        // compare exits 0 when nothing regressed, 1 on a regression, 2 when no run could be compared and
+        // 3 when the baseline name is unknown.
+        if (args.length >= 1) {
+            List<String> positional = new ArrayList<>();
+            Map<String, String> options = HybridTlsClient.parseOptions(args, positional);
+            if (positional.isEmpty()) {
+                LOGGER.error("Missing command");
+                LOGGER.error(USAGE);
+                System.exit(1);
+                return;
+            }
+            ResultsStore store = new ResultsStore(Path.of(options.getOrDefault("store", ResultsStore.DEFAULT_DIR)));
+            String command = positional.get(0).toLowerCase();
+            List<Long> ids = new ArrayList<>();
+            for (String id : positional.subList(Math.min(2, positional.size()), positional.size())) {
+                ids.add(Long.parseLong(id));
+            }
+            switch (command) {
+                case "list":
+                    listRuns(store);
+                    return;
+                case "baseline":
+                    requireName(positional);
+                    saveBaseline(store, positional.get(1), ids);
+                    return;
+                case "compare":
+                    requireName(positional);
+                    double p99Threshold = Double.parseDouble(options.getOrDefault("p99-threshold", "10"));
+                    double throughputThreshold = Double.parseDouble(options.getOrDefault("throughput-threshold", "10"));
+                    System.exit(compareToBaseline(store, positional.get(1), ids, p99Threshold, throughputThreshold));
+                    return;
+                default:
+                    LOGGER.error("Unknown command: {}", command);
+                    LOGGER.error(USAGE);
+                    System.exit(1);
+                    return;
+            }
+        }
+
         LOGGER.info("===========================================");
         LOGGER.info("    TAIL LATENCY ANALYSIS: CLASSICAL vs HYBRID");
         LOGGER.info("===========================================");
@@ -175,6 +225,153 @@ public class ResultsAnalyzer {
         LOGGER.info("");
     }
 
+    private static void requireName(List<String> positional) {
+        if (positional.size() < 2) {
+            LOGGER.error("Usage: ResultsAnalyzer {} <name> [runId...]", positional.get(0));
+            System.exit(1);
+        }
+    }
+
+    private static void listRuns(ResultsStore store) throws Exception {
+        LOGGER.info(String.format("%-5s %-20s %-10s %-26s %-8s %-10s %-10s %-10s %-10s %s",
+                "Id", "Time", "Mode", "Groups", "Load", "p99", "Tput", "Commit", "Label", "JDK"));
+        LOGGER.info("-".repeat(140));
+        for (ResultsStore.Run r : store.runs()) {
+            LOGGER.info(String.format("%-5d %-20s %-10s %-26s %-8s %-10.3f %-10.2f %-10s %-10s %s",
+                    r.id, java.time.Instant.ofEpochMilli(r.timestamp).toString().substring(0, 19), r.mode, r.groups,
+                    r.stats.concurrency + "x" + r.stats.runs, r.stats.p99, r.stats.throughput, r.commit,
+                    r.label, r.jdk));
+        }
+    }
+
+    /** Save the given runs (or the latest run of every key when none are given) as a named baseline. */
+    private static void saveBaseline(ResultsStore store, String name, List<Long> ids) throws Exception {
+        List<ResultsStore.Run> runs = store.runs();
+        if (ids.isEmpty()) {
+            Map<String, ResultsStore.Run> latest = new LinkedHashMap<>();
+            for (ResultsStore.Run r : runs) latest.put(r.key(), r);
+            for (ResultsStore.Run r : latest.values()) ids.add(r.id);
+        }
+        if (ids.isEmpty()) {
+            LOGGER.error("No runs recorded yet; run HybridTlsClient with --record first");
+            System.exit(1);
+        }
+        store.saveBaseline(name, ids);
+        LOGGER.info("Baseline '{}' saved with runs {}", name, ids);
+    }
+
+    /**
+     * Compare candidates against a baseline and log the verdict. Returns the process exit code:
+     * {@link #EXIT_OK} if nothing regressed, {@link #EXIT_REGRESSION} on any regression,
+     * {@link #EXIT_NOTHING_COMPARED} if no candidate run could be compared and
+     * {@link #EXIT_UNKNOWN_BASELINE} if no baseline with that name was saved.
+     */
+    static int compareToBaseline(ResultsStore store, String name, List<Long> candidateIds,
+                                 double p99Threshold, double throughputThreshold) throws Exception {
+        List<Long> baselineIds = store.baseline(name);
+        if (baselineIds == null) {
+            LOGGER.error("Unknown baseline: {}", name);
+            return EXIT_UNKNOWN_BASELINE;
+        }
+        List<ResultsStore.Run> all = store.runs();
+        List<ResultsStore.Run> baseline = new ArrayList<>();
+        List<ResultsStore.Run> candidates = new ArrayList<>();
+        for (ResultsStore.Run r : all) {
+            if (baselineIds.contains(r.id)) baseline.add(r);
+            if (candidateIds.contains(r.id)) candidates.add(r);
+        }
+        if (candidateIds.isEmpty()) {
+            candidates = latestAfter(baseline, all);
+        }
+
+        List<Comparison> comparisons = compare(baseline, candidates, p99Threshold, throughputThreshold);
+        LOGGER.info("=== COMPARISON AGAINST BASELINE '{}' (p99 +{}%, throughput -{}%) ===", name,
+                p99Threshold, throughputThreshold);
+        LOGGER.info("");
+        LOGGER.info(String.format("%-44s %-10s %-10s %-9s %-10s %-10s %-9s %s",
+                "Key", "Base p99", "New p99", "Delta%", "Base tput", "New tput", "Delta%", "Verdict"));
+        LOGGER.info("-".repeat(120));
+        boolean regressed = false;
+        int compared = 0;
+        for (Comparison c : comparisons) {
+            LOGGER.info(String.format("%-44s %-10.3f %-10.3f %-+9.1f %-10.2f %-10.2f %-+9.1f %s",
+                    c.baseline.key(), c.baseline.stats.p99, c.candidate.stats.p99, c.p99DeltaPct,
+                    c.baseline.stats.throughput, c.candidate.stats.throughput, c.throughputDeltaPct,
+                    !c.comparable() ? "no baseline data" : c.regressed ? "REGRESSION" : "ok"));
+            regressed |= c.regressed;
+            if (c.comparable()) compared++;
+        }
+        LOGGER.info("");
+        if (compared == 0) {
+            LOGGER.error("No candidate run matches a baseline key (mode|groups|load) with usable baseline data; "
+                    + "nothing compared");
+            return EXIT_NOTHING_COMPARED;
+        }
+        LOGGER.info(regressed ? "RESULT: regression detected" : "RESULT: no regression");
+        return regressed ? EXIT_REGRESSION : EXIT_OK;
+    }
+
+    /** For every baseline key, the most recent run with that key recorded after the baseline run. */
+    static List<ResultsStore.Run> latestAfter(List<ResultsStore.Run> baseline, List<ResultsStore.Run> all) {
+        List<ResultsStore.Run> latest = new ArrayList<>();
+        for (ResultsStore.Run b : baseline) {
+            ResultsStore.Run newest = null;
+            for (ResultsStore.Run r : all) {
+                if (r.id > b.id && r.key().equals(b.key())) newest = r;
+            }
+            if (newest != null) latest.add(newest);
+        }
+        return latest;
+    }
+
+    /**
+     * Pair candidates with baseline runs of the same key. A pair regresses when p99 grows by more than
+     * {@code p99Threshold} percent or throughput drops by more than {@code throughputThreshold} percent.
+     */
+    static List<Comparison> compare(List<ResultsStore.Run> baseline, List<ResultsStore.Run> candidates,
+                                    double p99Threshold, double throughputThreshold) {
+        Map<String, ResultsStore.Run> byKey = new LinkedHashMap<>();
+        for (ResultsStore.Run b : baseline) byKey.put(b.key(), b);
+
+        List<Comparison> out = new ArrayList<>();
+        for (ResultsStore.Run c : candidates) {
+            ResultsStore.Run b = byKey.get(c.key());
+            if (b == null) {
+                continue;
+            }
+            Comparison cmp = new Comparison();
+            cmp.baseline = b;
+            cmp.candidate = c;
+            cmp.p99DeltaPct = deltaPct(b.stats.p99, c.stats.p99);
+            cmp.throughputDeltaPct = deltaPct(b.stats.throughput, c.stats.throughput);
+            // NaN (no baseline value) compares false, so a missing metric never flags on its own
+            cmp.regressed = cmp.p99DeltaPct > p99Threshold || -cmp.throughputDeltaPct > throughputThreshold;
+            out.add(cmp);
+        }
+        return out;
+    }
+
+    /** Percent change from {@code base} to {@code value}; NaN when the baseline is zero (no data). */
+    static double deltaPct(double base, double value) {
+        if (base <= 0) {
+            return Double.NaN;
+        }
+        return ((value - base) / base) * 100;
+    }
+
+    static class Comparison {
+        ResultsStore.Run baseline;
+        ResultsStore.Run candidate;
+        double p99DeltaPct;
+        double throughputDeltaPct;
+        boolean regressed;
+
+        /** False when the baseline run has neither a p99 nor a throughput to compare against. */
+        boolean comparable() {
+            return !Double.isNaN(p99DeltaPct) || !Double.isNaN(throughputDeltaPct);
+        }
+    }
+
     static class Stats {
         int concurrency;
         int runs;
@@ -0,0 +1,475 @@
+package bench;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local store of benchmark runs, one record per client run.
+ *
+ * <p>Layout under the store directory:
+ * <ul>
+ *   <li>{@code runs.dat} — magic header followed by framed records
+ *       {@code [int length][byte type][payload][int crc32]}. Records are never rewritten.</li>
+ *   <li>{@code runs.idx} — one fixed-width entry per record
+ *       {@code [long offset][byte type][long timestamp][int keyHash]} so lookups do not have to
+ *       decode the whole data file. The index is derived data and is rebuilt from {@code runs.dat}
+ *       whenever it is missing or out of step with the data file.</li>
+ * </ul>
+ * Named baselines are stored as records too; a later baseline with the same name replaces the
+ * earlier one.
+ *
+ * <p>A frame whose CRC does not match is kept in the index as a corrupt placeholder and skipped on
+ * read, so the ids of the runs after it do not shift. Only a torn final frame (one whose length runs
+ * past the end of the file with no valid frame after it) is cut off by the next append.
+ */
+final class ResultsStore {
+
+    static final String DEFAULT_DIR = "results/store";
+
+    private static final byte[] MAGIC = {'P', 'Q', 'C', 'R', 'U', 'N', 'S', '1'};
+    private static final byte TYPE_CORRUPT = 0;
+    private static final byte TYPE_RUN = 1;
+    private static final byte TYPE_BASELINE = 2;
+    private static final int INDEX_ENTRY_BYTES = 8 + 1 + 8 + 4;
+
+    private final Path dataFile;
+    private final Path indexFile;
+
+    ResultsStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.dataFile = dir.resolve("runs.dat");
+        this.indexFile = dir.resolve("runs.idx");
+    }
+
+    /** Append a run and return its id (the run's ordinal position in the store, starting at 1). */
+    synchronized long append(Run run) throws IOException {
+        run.id = appendRecord(TYPE_RUN, run.timestamp, run.key().hashCode(), run::write);
+        return run.id;
+    }
+
+    /** Record (or replace) the named baseline as the given set of run ids. */
+    synchronized void saveBaseline(String name, List<Long> runIds) throws IOException {
+        appendRecord(TYPE_BASELINE, System.currentTimeMillis(), name.hashCode(), out -> {
+            out.writeUTF(name);
+            out.writeInt(runIds.size());
+            for (long id : runIds) out.writeLong(id);
+        });
+    }
+
+    /** All runs in append order. */
+    synchronized List<Run> runs() throws IOException {
+        List<Run> runs = new ArrayList<>();
+        List<IndexEntry> index = readIndex();
+        try (RandomAccessFile raf = openForRead()) {
+            for (int i = 0; i < index.size(); i++) {
+                IndexEntry e = index.get(i);
+                DataInputStream in = e.type == TYPE_RUN ? readPayload(raf, e.offset) : null;
+                if (in != null) {
+                    Run r = Run.read(in);
+                    r.id = i + 1;
+                    runs.add(r);
+                }
+            }
+        }
+        return runs;
+    }
+
+    /** Run ids of the most recent baseline with this name, or null if none was saved. */
+    synchronized List<Long> baseline(String name) throws IOException {
+        List<IndexEntry> index = readIndex();
+        try (RandomAccessFile raf = openForRead()) {
+            for (int i = index.size() - 1; i >= 0; i--) {
+                IndexEntry e = index.get(i);
+                if (e.type != TYPE_BASELINE || e.keyHash != name.hashCode()) {
+                    continue;
+                }
+                DataInputStream in = readPayload(raf, e.offset);
+                if (in == null || !name.equals(in.readUTF())) {
+                    continue;
+                }
+                int n = in.readInt();
+                List<Long> ids = new ArrayList<>(n);
+                for (int k = 0; k < n; k++) ids.add(in.readLong());
+                return ids;
+            }
+        }
+        return null;
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private long appendRecord(byte type, long timestamp, int keyHash, PayloadWriter writer) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeByte(type);
+            writer.write(out);
+        }
+        byte[] body = buf.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        try (FileChannel ch = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ)) {
+            FileLock lock = ch.lock();
+            try {
+                return appendFrame(ch, type, timestamp, keyHash, body, crc);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private long appendFrame(FileChannel ch, byte type, long timestamp, int keyHash, byte[] body, CRC32 crc)
+            throws IOException {
+        if (ch.size() == 0) {
+            ch.write(ByteBuffer.wrap(MAGIC), 0);
+            // a stale index from a deleted data file would point at the wrong records
+            Files.deleteIfExists(indexFile);
+        }
+        List<IndexEntry> index = readIndex();
+        long offset = index.isEmpty() ? MAGIC.length : frameEnd(index.get(index.size() - 1).offset);
+        if (offset < ch.size()) {
+            // readIndex only leaves bytes after the last frame when they are a torn tail
+            ch.truncate(offset);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + body.length + 4);
+        frame.putInt(body.length).put(body).putInt((int) crc.getValue()).flip();
+        while (frame.hasRemaining()) {
+            ch.write(frame, offset + frame.position());
+        }
+        ch.force(false);
+
+        try (DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(indexFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            idx.writeLong(offset);
+            idx.writeByte(type);
+            idx.writeLong(timestamp);
+            idx.writeInt(keyHash);
+        }
+        return index.size() + 1;
+    }
+
+    private List<IndexEntry> readIndex() throws IOException {
+        if (!Files.exists(dataFile)) {
+            return new ArrayList<>();
+        }
+        List<IndexEntry> entries = new ArrayList<>();
+        if (Files.exists(indexFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                long count = Files.size(indexFile) / INDEX_ENTRY_BYTES;
+                for (long i = 0; i < count; i++) {
+                    entries.add(new IndexEntry(in.readLong(), in.readByte(), in.readLong(), in.readInt()));
+                }
+            }
+        }
+        long dataSize = Files.size(dataFile);
+        if (dataSize < MAGIC.length) {
+            return new ArrayList<>();
+        }
+        boolean consistent;
+        if (entries.isEmpty()) {
+            consistent = dataSize == MAGIC.length;
+        } else {
+            long lastOffset = entries.get(entries.size() - 1).offset;
+            consistent = lastOffset < dataSize && frameEnd(lastOffset) == dataSize;
+        }
+        if (!consistent) {
+            entries = rebuildIndex();
+        }
+        return entries;
+    }
+
+    private long frameEnd(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile.toFile(), "r")) {
+            raf.seek(offset);
+            return offset + 4 + raf.readInt() + 4;
+        }
+    }
+
+    /**
+     * Rescan the data file and rewrite the index. A frame with a bad CRC is indexed as
+     * {@code TYPE_CORRUPT} and skipped by its length prefix. Scanning stops at a frame whose length
+     * runs past the end of the file; that is accepted as a torn tail only if no valid frame follows
+     * it, otherwise the length prefix itself is damaged and the store is refused rather than
+     * truncated.
+     */
+    private List<IndexEntry> rebuildIndex() throws IOException {
+        List<IndexEntry> entries = new ArrayList<>();
+        try (RandomAccessFile raf = openForRead()) {
+            long offset = MAGIC.length;
+            long size = raf.length();
+            while (offset < size) {
+                byte[] body = readFrame(raf, offset, size);
+                if (body == null) {
+                    long next = nextValidFrame(raf, offset + 1, size);
+                    if (next >= 0) {
+                        throw new IOException("Corrupt frame header at offset " + offset + " in " + dataFile
+                                + " with valid records after it (next at " + next + "); refusing to truncate");
+                    }
+                    break;
+                }
+                if (!crcMatches(raf, body)) {
+                    entries.add(new IndexEntry(offset, TYPE_CORRUPT, 0, 0));
+                    offset += 4 + body.length + 4;
+                    continue;
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+                byte type = in.readByte();
+                long timestamp;
+                int keyHash;
+                if (type == TYPE_RUN) {
+                    Run r = Run.read(in);
+                    timestamp = r.timestamp;
+                    keyHash = r.key().hashCode();
+                } else {
+                    String name = in.readUTF();
+                    timestamp = 0;
+                    keyHash = name.hashCode();
+                }
+                entries.add(new IndexEntry(offset, type, timestamp, keyHash));
+                offset += 4 + body.length + 4;
+            }
+        }
+        try (DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            for (IndexEntry e : entries) {
+                idx.writeLong(e.offset);
+                idx.writeByte(e.type);
+                idx.writeLong(e.timestamp);
+                idx.writeInt(e.keyHash);
+            }
+        }
+        return entries;
+    }
+
+    /** Body of the frame at {@code offset}, or null if its length prefix is invalid or runs past EOF. */
+    private static byte[] readFrame(RandomAccessFile raf, long offset, long size) throws IOException {
+        if (offset + 4 > size) {
+            return null;
+        }
+        raf.seek(offset);
+        int len = raf.readInt();
+        if (len <= 0 || offset + 4 + len + 4 > size) {
+            return null;
+        }
+        byte[] body = new byte[len];
+        raf.readFully(body);
+        return body;
+    }
+
+    /** Reads the CRC that follows {@code body} and checks it. */
+    private static boolean crcMatches(RandomAccessFile raf, byte[] body) throws IOException {
+        int storedCrc = raf.readInt();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == storedCrc;
+    }
+
+    /** Offset of the first frame at or after {@code from} with a valid length and CRC, or -1. */
+    private static long nextValidFrame(RandomAccessFile raf, long from, long size) throws IOException {
+        for (long offset = from; offset + 4 + 1 + 4 <= size; offset++) {
+            byte[] body = readFrame(raf, offset, size);
+            if (body != null && crcMatches(raf, body)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private RandomAccessFile openForRead() throws IOException {
+        if (!Files.exists(dataFile)) {
+            throw new FileNotFoundException("No results store at " + dataFile);
+        }
+        RandomAccessFile raf = new RandomAccessFile(dataFile.toFile(), "r");
+        byte[] magic = new byte[MAGIC.length];
+        raf.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            raf.close();
+            throw new IOException("Not a results store: " + dataFile);
+        }
+        return raf;
+    }
+
+    /** Payload stream positioned after the record type byte, or null if the frame fails its CRC. */
+    private static DataInputStream readPayload(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset);
+        byte[] body = new byte[raf.readInt()];
+        raf.readFully(body);
+        if (!crcMatches(raf, body)) {
+            return null;
+        }
+        return new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1));
+    }
+
+    private static final class IndexEntry {
+        final long offset;
+        final byte type;
+        final long timestamp;
+        final int keyHash;
+
+        IndexEntry(long offset, byte type, long timestamp, int keyHash) {
+            this.offset = offset;
+            this.type = type;
+            this.timestamp = timestamp;
+            this.keyHash = keyHash;
+        }
+    }
+
+    /** One benchmark run: environment metadata plus the aggregated client statistics. */
+    static final class Run {
+        long id;
+        long timestamp;
+        String label = "";
+        String mode = "";
+        String groups = "";
+        String jdk = "";
+        String os = "";
+        String cpu = "";
+        String commit = "";
+        String jvmArgs = "";
+        ResultsAnalyzer.Stats stats = new ResultsAnalyzer.Stats();
+
+        /**
+         * Runs compare against each other when they measured the same thing: same mode, named groups
+         * and load shape. JDK, CPU and commit are deliberately not part of the key.
+         */
+        String key() {
+            return mode + "|" + groups + "|" + stats.concurrency + "x" + stats.runs;
+        }
+
+        /** Fill in JDK, OS, CPU, git commit and JVM flags for the current process. */
+        static Run forCurrentEnvironment(String mode, String groups, ResultsAnalyzer.Stats stats) {
+            Run r = new Run();
+            r.timestamp = System.currentTimeMillis();
+            r.mode = mode;
+            r.groups = groups;
+            r.stats = stats;
+            r.jdk = System.getProperty("java.vendor") + " " + System.getProperty("java.runtime.version");
+            r.os = System.getProperty("os.name") + " " + System.getProperty("os.version");
+            r.cpu = cpuModel() + " x" + Runtime.getRuntime().availableProcessors();
+            r.commit = gitCommit();
+            r.jvmArgs = String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments());
+            return r;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(timestamp);
+            writeString(out, label);
+            writeString(out, mode);
+            writeString(out, groups);
+            writeString(out, jdk);
+            writeString(out, os);
+            writeString(out, cpu);
+            writeString(out, commit);
+            writeString(out, jvmArgs);
+            ResultsAnalyzer.Stats s = stats;
+            out.writeInt(s.concurrency);
+            out.writeInt(s.runs);
+            out.writeInt(s.success);
+            out.writeInt(s.fail);
+            out.writeDouble(s.mean);
+            out.writeDouble(s.median);
+            out.writeDouble(s.p90);
+            out.writeDouble(s.p95);
+            out.writeDouble(s.p99);
+            out.writeDouble(s.max);
+            out.writeDouble(s.throughput);
+        }
+
+        /**
+         * {@code writeUTF} fails on more than 64 KB of encoded text (a long JVM command line can get
+         * there), so longer values are cut to fit and marked with a trailing ellipsis.
+         */
+        static void writeString(DataOutputStream out, String value) throws IOException {
+            out.writeUTF(truncateForUtf(value));
+        }
+
+        static String truncateForUtf(String value) {
+            int limit = 65535 - 3;
+            int bytes = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                bytes += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+                if (bytes > limit) {
+                    int end = Character.isLowSurrogate(c) ? i - 1 : i;
+                    return value.substring(0, end) + "\u2026";
+                }
+            }
+            return value;
+        }
+
+        static Run read(DataInputStream in) throws IOException {
+            Run r = new Run();
+            r.timestamp = in.readLong();
+            r.label = in.readUTF();
+            r.mode = in.readUTF();
+            r.groups = in.readUTF();
+            r.jdk = in.readUTF();
+            r.os = in.readUTF();
+            r.cpu = in.readUTF();
+            r.commit = in.readUTF();
+            r.jvmArgs = in.readUTF();
+            ResultsAnalyzer.Stats s = r.stats;
+            s.concurrency = in.readInt();
+            s.runs = in.readInt();
+            s.success = in.readInt();
+            s.fail = in.readInt();
+            s.mean = in.readDouble();
+            s.median = in.readDouble();
+            s.p90 = in.readDouble();
+            s.p95 = in.readDouble();
+            s.p99 = in.readDouble();
+            s.max = in.readDouble();
+            s.throughput = in.readDouble();
+            return r;
+        }
+
+        private static String cpuModel() {
+            Path cpuinfo = Path.of("/proc/cpuinfo");
+            if (Files.isReadable(cpuinfo)) {
+                try (BufferedReader br = Files.newBufferedReader(cpuinfo)) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith("model name")) {
+                            return line.substring(line.indexOf(':') + 1).trim();
+                        }
+                    }
+                } catch (IOException e) {
+                    // fall through to the generic description
+                }
+            }
+            return System.getProperty("os.arch");
+        }
+
+        private static String gitCommit() {
+            String fromProperty = System.getProperty("bench.commit");
+            if (fromProperty != null && !fromProperty.isEmpty()) {
+                return fromProperty;
+            }
+            try {
+                Process p = new ProcessBuilder("git", "rev-parse", "--short", "HEAD")
+                        .redirectErrorStream(true).start();
+                String out;
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                    out = br.readLine();
+                }
+                if (p.waitFor(5, TimeUnit.SECONDS) && p.exitValue() == 0 && out != null) {
+                    return out.trim();
+                }
+            } catch (IOException e) {
+                // git not available
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "unknown";
+        }
+    }
+}
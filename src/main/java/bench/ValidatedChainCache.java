@@ -0,0 +1,156 @@
+package bench;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trust manager that remembers server chains a PKIX delegate has already accepted, so repeat
+ * handshakes with the same certificates skip path building and signature verification.
+ *
+ * <p>Entries are keyed by the SHA-256 fingerprint of the presented chain plus the auth type and peer
+ * host (endpoint identification is part of what the delegate checked). The cache holds at most
+ * {@code maxEntries} chains, evicting the least recently used, and never serves an entry past the
+ * earliest {@code notAfter} in its chain. Failed validations are not cached. Revocation is not
+ * checked by the delegate either, so caching does not skip any check the uncached path would do.
+ */
+final class ValidatedChainCache extends X509ExtendedTrustManager {
+
+    private final X509ExtendedTrustManager delegate;
+    private final int maxEntries;
+    private final Map<String, Long> validUntil;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    ValidatedChainCache(X509ExtendedTrustManager delegate, int maxEntries) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.validUntil = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > ValidatedChainCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    synchronized int size() {
+        return validUntil.size();
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+            throws CertificateException {
+        SSLSession session = socket instanceof SSLSocket ? ((SSLSocket) socket).getHandshakeSession() : null;
+        String key = key(chain, authType, session != null ? session.getPeerHost() : null);
+        if (!cached(key)) {
+            delegate.checkServerTrusted(chain, authType, socket);
+            remember(key, chain);
+        }
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+            throws CertificateException {
+        String key = key(chain, authType, engine != null ? engine.getPeerHost() : null);
+        if (!cached(key)) {
+            delegate.checkServerTrusted(chain, authType, engine);
+            remember(key, chain);
+        }
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        String key = key(chain, authType, null);
+        if (!cached(key)) {
+            delegate.checkServerTrusted(chain, authType);
+            remember(key, chain);
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+        delegate.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegate.getAcceptedIssuers();
+    }
+
+    private synchronized boolean cached(String key) {
+        Long until = validUntil.get(key);
+        if (until != null && System.currentTimeMillis() < until) {
+            hits.incrementAndGet();
+            return true;
+        }
+        if (until != null) {
+            validUntil.remove(key);
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    private synchronized void remember(String key, X509Certificate[] chain) {
+        long until = Long.MAX_VALUE;
+        for (X509Certificate cert : chain) {
+            until = Math.min(until, cert.getNotAfter().getTime());
+        }
+        validUntil.put(key, until);
+    }
+
+    /** SHA-256 over every certificate's DER encoding, followed by auth type and peer host. */
+    static String key(X509Certificate[] chain, String authType, String peerHost) throws CertificateException {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            for (X509Certificate cert : chain) {
+                sha256.update(cert.getEncoded());
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : sha256.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.append('|').append(authType).append('|').append(peerHost).toString();
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            throw new CertificateException("Cannot fingerprint certificate chain", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientMixTest {
+
+    @Test
+    void parse_resolvesModesAndDropsZeroWeights() {
+        ClientMix mix = ClientMix.parse(" classical:70, Hybrid:25 ,pqc:0");
+        List<ClientMix.Profile> profiles = mix.profiles();
+        assertEquals(2, profiles.size());
+        assertEquals("classical", profiles.get(0).mode);
+        assertArrayEquals(GroupModes.forMode("classical"), profiles.get(0).namedGroups);
+        assertEquals(70, profiles.get(0).weight);
+        assertEquals("hybrid", profiles.get(1).mode);
+        assertArrayEquals(GroupModes.forMode("hybrid"), profiles.get(1).namedGroups);
+        assertEquals("classical 74%, hybrid 26%", mix.toString());
+    }
+
+    @Test
+    void parse_rejectsBadSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> ClientMix.parse("classical"));
+        assertThrows(IllegalArgumentException.class, () -> ClientMix.parse("classical:70:1"));
+        assertThrows(IllegalArgumentException.class, () -> ClientMix.parse("classical:-5"));
+        assertThrows(IllegalArgumentException.class, () -> ClientMix.parse("classical:0,hybrid:0"));
+        assertThrows(IllegalArgumentException.class, () -> ClientMix.parse("classical:70,classical:30"));
+        IllegalArgumentException weight = assertThrows(IllegalArgumentException.class,
+                () -> ClientMix.parse("classical:lots"));
+        assertTrue(weight.getMessage().contains("lots"), weight.getMessage());
+        IllegalArgumentException mode = assertThrows(IllegalArgumentException.class,
+                () -> ClientMix.parse("classical:50,quantum:50"));
+        assertTrue(mode.getMessage().contains("quantum"), mode.getMessage());
+    }
+
+    @Test
+    void pick_followsTheWeights() {
+        ClientMix mix = ClientMix.parse("classical:70,hybrid:25,pqc:5");
+        int draws = 100_000;
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < draws; i++) {
+            counts.merge(mix.pick().mode, 1, Integer::sum);
+        }
+        // about ten standard deviations at this sample size
+        assertEquals(0.70, counts.get("classical") / (double) draws, 0.015);
+        assertEquals(0.25, counts.get("hybrid") / (double) draws, 0.015);
+        assertEquals(0.05, counts.get("pqc") / (double) draws, 0.015);
+    }
+
+    @Test
+    void of_alwaysPicksTheSingleProfile() {
+        ClientMix mix = ClientMix.of(new String[]{"x25519"});
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new String[]{"x25519"}, mix.pick().namedGroups);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupStatsTest {
+
+    private static List<String> logLines(GroupStats stats, double windowSeconds) {
+        Logger logger = new LoggerContext().getLogger("group-stats-test");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        stats.log(logger, windowSeconds);
+        List<String> lines = new ArrayList<>();
+        for (ILoggingEvent e : appender.list) {
+            lines.add(e.getFormattedMessage());
+        }
+        return lines;
+    }
+
+    private static List<String> csvRows(List<String> lines) {
+        int header = lines.indexOf("group,count,share_pct,mean_ms,median_ms,p99_ms,max_ms,throughput");
+        assertTrue(header > 0, "GROUP_CSV header missing");
+        assertEquals("GROUP_CSV_OUTPUT:", lines.get(header - 1));
+        return lines.subList(header + 1, lines.size());
+    }
+
+    @Test
+    void log_breaksDownByGroup() {
+        GroupStats stats = new GroupStats();
+        for (int i = 1; i <= 3; i++) {
+            stats.record("x25519", i);
+        }
+        stats.record("X25519MLKEM768", 10);
+        stats.record(null, 5);
+        assertEquals(5, stats.total());
+
+        List<String> lines = logLines(stats, 2.0);
+        assertTrue(lines.contains("--- By Negotiated Group ---"));
+        List<String> rows = csvRows(lines);
+        // sorted by group name, unobserved groups under "unknown"
+        assertEquals(3, rows.size());
+        assertEquals("X25519MLKEM768,1,20.0,10.000,10.000,10.000,10.000,0.50", rows.get(0));
+        assertEquals("unknown,1,20.0,5.000,5.000,5.000,5.000,0.50", rows.get(1));
+        String[] x25519 = rows.get(2).split(",");
+        assertEquals("x25519", x25519[0]);
+        assertEquals("3", x25519[1]);
+        assertEquals("60.0", x25519[2]);
+        assertEquals("2.000", x25519[3]);
+        assertEquals(2.0, Double.parseDouble(x25519[4]), 2.0 * LatencyHistogram.PRECISION);
+        assertEquals("3.000", x25519[6]);
+        assertEquals("1.50", x25519[7]);
+    }
+
+    @Test
+    void log_isSilentWithoutHandshakes() {
+        assertTrue(logLines(new GroupStats(), 1.0).isEmpty());
+    }
+
+    @Test
+    void histogram_percentilesStayWithinPrecisionInConstantMemory() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            h.record(i / 100.0);
+        }
+        assertEquals(100_000, h.count());
+        assertEquals(0.01, h.min());
+        assertEquals(1000.0, h.max());
+        assertEquals(500.005, h.mean(), 1e-6);
+        assertEquals(500.0, h.percentile(50), 500.0 * LatencyHistogram.PRECISION);
+        assertEquals(990.0, h.percentile(99), 990.0 * LatencyHistogram.PRECISION);
+        assertEquals(1000.0, h.percentile(100), 1e-9);
+
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(5000);
+        h.add(other);
+        assertEquals(100_001, h.count());
+        assertEquals(5000.0, h.max());
+        assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import javax.net.ssl.SSLSocket;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -19,8 +20,14 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.*;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -72,6 +79,181 @@ public class HybridTlsClientTest {
         }
     }
 
+    @Test
+    void chainValidation_fullChainValidatedThenServedFromCache() throws Exception {
+        BenchPki pki = BenchPki.generate("RSA");
+        HybridTlsServer server = new HybridTlsServer(0, new String[]{"x25519"});
+        server.setKeyStore(pki.serverKeyStore(), BenchPki.PASSWORD.toCharArray());
+        Thread t = server.startInBackground("hts-test-pkix");
+        ClientMix x25519 = ClientMix.of(new String[]{"x25519"});
+
+        HybridTlsClient pkix = new HybridTlsClient("localhost", server.getPort(), x25519, null);
+        pkix.setChainValidation(ChainValidation.pkix(pki.trustStore()));
+        assertDoesNotThrow(pkix::runSingleConnection);
+
+        ChainValidation cached = ChainValidation.cached(pki.trustStore(), 4);
+        HybridTlsClient caching = new HybridTlsClient("localhost", server.getPort(), x25519, null);
+        caching.setChainValidation(cached);
+        // resumed handshakes never see the certificate, so force full ones
+        caching.setSessionResumption(false);
+        caching.setHandshakeTap(true);
+        assertFalse(caching.runSingleConnection().resumed);
+        assertFalse(caching.runSingleConnection().resumed);
+        assertFalse(caching.runSingleConnection().resumed);
+        assertEquals(1, cached.cache().misses(), "only the first handshake should run PKIX");
+        assertEquals(2, cached.cache().hits());
+        assertEquals(1, cached.cache().size());
+
+        // a second client (its own SSLContext) built from the same validation shares the cache
+        HybridTlsClient secondClient = new HybridTlsClient("localhost", server.getPort(), x25519, null);
+        secondClient.setChainValidation(cached);
+        secondClient.setSessionResumption(false);
+        secondClient.runSingleConnection();
+        assertEquals(3, cached.cache().hits());
+
+        // a chain from an unrelated root must be rejected, cached or not
+        ChainValidation otherRoot = ChainValidation.cached(BenchPki.generate("RSA").trustStore(), 4);
+        HybridTlsClient untrusted = new HybridTlsClient("localhost", server.getPort(), x25519, null);
+        untrusted.setChainValidation(otherRoot);
+        assertThrows(Exception.class, untrusted::runSingleConnection);
+        assertEquals(0, otherRoot.cache().size(), "failed validations must not be cached");
+
+        server.stop();
+        t.join(1000);
+        assertFalse(t.isAlive());
+    }
+
+    @Test
+    void crossProviderHandshakes_honorPerProviderGroups() throws Exception {
+        writeTempKeystore();
+        JsseProvider sun = JsseProvider.parse("sunjsse");
+        JsseProvider bc = JsseProvider.parse("bcjsse");
+
+        // groups are set per socket for both providers, so a secp384r1-only BC server must negotiate secp384r1
+        HybridTlsServer bcServer = new HybridTlsServer(0, new String[]{"secp384r1"});
+        bcServer.setJsseProvider(bc);
+        Thread t1 = bcServer.startInBackground("hts-test-bc-server");
+        HybridTlsClient sunClient = new HybridTlsClient("localhost", bcServer.getPort(), new String[]{"x25519", "secp384r1"});
+        sunClient.setJsseProvider(sun);
+        sunClient.setHandshakeTap(true);
+        assertEquals("secp384r1", sunClient.runSingleConnection().group);
+        bcServer.stop();
+        t1.join(1000);
+
+        HybridTlsServer sunServer = new HybridTlsServer(0, new String[]{"x25519"});
+        Thread t2 = sunServer.startInBackground("hts-test-sun-server");
+        HybridTlsClient bcClient = new HybridTlsClient("localhost", sunServer.getPort(), new String[]{"x25519"});
+        bcClient.setJsseProvider(bc);
+        bcClient.setHandshakeTap(true);
+        assertEquals("x25519", bcClient.runSingleConnection().group);
+        sunServer.stop();
+        t2.join(1000);
+
+        // a BC server configured after the Sun one still gets its own groups, and BC negotiates hybrid
+        assertTrue(Arrays.asList(bc.groupsFor("hybrid")).contains("X25519MLKEM768"));
+        // names are matched in any case and come back in the provider's spelling
+        assertArrayEquals(new String[]{"X25519MLKEM768", "x25519"},
+                bc.supportedOnly(new String[]{"x25519mlkem768", "nosuchgroup", "X25519"}));
+        assertArrayEquals(new String[]{"x25519"}, JsseProvider.defaultProvider().supportedOnly(new String[]{"X25519"}));
+        HybridTlsServer bcHybrid = new HybridTlsServer(0, new String[]{"X25519MLKEM768"});
+        bcHybrid.setJsseProvider(bc);
+        Thread t3 = bcHybrid.startInBackground("hts-test-bc-hybrid");
+        HybridTlsClient bcHybridClient = new HybridTlsClient("localhost", bcHybrid.getPort(), new String[]{"X25519MLKEM768", "x25519"});
+        bcHybridClient.setJsseProvider(bc);
+        bcHybridClient.setHandshakeTap(true);
+        assertEquals("X25519MLKEM768", bcHybridClient.runSingleConnection().group);
+        bcHybrid.stop();
+        t3.join(1000);
+    }
+
+    @Test
+    void holdMode_samplesCountOnlyLiveConnections() throws Exception {
+        writeTempKeystore();
+        HybridTlsServer server = new HybridTlsServer(0, new String[]{"x25519"});
+        server.setHoldConnections(10);
+        server.setWorkerThreads(2);
+        Thread t = server.startInBackground("hts-test-hold");
+
+        HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), new String[]{"x25519"});
+        client.setHandshakeTap(true);
+        Map<String, Integer> negotiated = new TreeMap<>();
+        List<SSLSocket> held = new ArrayList<>(client.openAndHold(10, 1, negotiated));
+        for (int i = 0; i < 4; i++) {
+            held.get(i).close();
+        }
+        Thread.sleep(200);
+        held.addAll(client.openAndHold(10, 1, negotiated));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<MemorySampler.Sample> samples = server.holdSamples();
+        while (samples.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            samples = server.holdSamples();
+        }
+        HybridTlsClient.closeAll(held);
+
+        assertEquals(3, samples.size(), "samples at startup, 10 and 20 accepted connections");
+        MemorySampler.Sample last = samples.get(2);
+        assertEquals(20, last.accepted);
+        assertEquals(16, last.connections, "connections closed by the client must not be counted");
+        assertEquals(Integer.valueOf(20), negotiated.get("x25519"));
+
+        server.stop();
+        t.join(1000);
+        assertFalse(t.isAlive());
+    }
+
+    @Test
+    void streamEcho_survivesForcedKeyUpdates() throws Exception {
+        writeTempKeystore();
+        HybridTlsServer server = new HybridTlsServer(0, new String[]{"x25519"});
+        server.setStreamEcho(true);
+        Thread t = server.startInBackground("hts-test-keyupdate");
+
+        HybridTlsClient client = new HybridTlsClient("localhost", server.getPort(), new String[]{"x25519"});
+        List<SSLSocket> holder = new ArrayList<>();
+        client.connect(holder);
+        assertEquals("TLSv1.3", holder.get(0).getSession().getProtocol());
+        // 1 KiB records, KeyUpdate every 64 KiB, 20 ms windows
+        KeyUpdateStress.Stream stream = new KeyUpdateStress.Stream(holder.get(0), "x25519", 1024, 4, 64 * 1024, true,
+                TimeUnit.MILLISECONDS.toNanos(20));
+        AtomicReference<Throwable> readerError = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                stream.read();
+            } catch (Throwable e) {
+                readerError.set(e);
+            }
+        }, "hts-test-keyupdate-reader");
+        reader.start();
+        stream.write(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500));
+        reader.join(5000);
+        stream.close();
+
+        assertFalse(reader.isAlive(), "the reader should stop on the end-of-stream record");
+        assertNull(readerError.get(), "reader failed");
+        assertTrue(stream.rekeys > 0, "at least one KeyUpdate should have been forced");
+        // SunJSSE answers startHandshake() on TLS 1.3 with a KeyUpdate (update_requested), which is not
+        // visible from here; what can be checked is that traffic kept flowing in the windows after them
+        assertTrue(stream.windows > 0, "rekeys well before the deadline should close a full window");
+        assertTrue(stream.windows <= stream.rekeys);
+        assertTrue(stream.windowRecordsSum > 0, "records should be echoed inside the rekey windows");
+        assertTrue(stream.windowedRecords <= stream.records);
+        assertEquals(stream.records, stream.latencies.count());
+        assertTrue(stream.rekeyCallNanos > 0);
+
+        KeyUpdateStress.Cell cell = new KeyUpdateStress.Cell("classical", "suite", "x25519");
+        cell.add(stream, TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(stream.rekeys, cell.rekeys);
+        assertEquals(stream.records * 1024, cell.bytes);
+        assertTrue(cell.median() > 0 && cell.median() <= cell.p99() && cell.p99() <= cell.max());
+        assertTrue(cell.meanSpikeMax() > 0);
+
+        server.stop();
+        t.join(1000);
+        assertFalse(t.isAlive());
+    }
+
     @Test
     void singleHandshake_succeeds() throws Exception {
         writeTempKeystore();
@@ -142,5 +324,35 @@ public class HybridTlsClientTest {
         t.join(1000);
         assertFalse(t.isAlive());
     }
-}
 
+    @Test
+    void helloRetry_detectedAndAvoidedByPrediction() throws Exception {
+        writeTempKeystore();
+
+        // JSSE sends one key share per group family (x25519 + secp256r1 here); secp384r1 is only
+        // advertised, so a secp384r1-only server has to ask for it with a HelloRetryRequest
+        HybridTlsServer server = new HybridTlsServer(0, new String[]{"secp384r1"});
+        Thread t = server.startInBackground("hts-test-hrr");
+        String[] offer = {"x25519", "secp256r1", "secp384r1"};
+
+        HybridTlsClient plain = new HybridTlsClient("localhost", server.getPort(), offer);
+        // the default, untapped path still completes the handshake but observes nothing
+        assertNull(plain.runSingleConnection().group);
+        plain.setHandshakeTap(true);
+        HybridTlsClient.Handshake first = plain.runSingleConnection();
+        assertFalse(first.keyShares.contains("secp384r1"), "secp384r1 should only be advertised");
+        assertTrue(first.helloRetry, "missing secp384r1 key share should trigger HRR");
+        assertEquals("secp384r1", first.group);
+
+        KeySharePredictor predictor = new KeySharePredictor();
+        HybridTlsClient predicting = new HybridTlsClient("localhost", server.getPort(), offer, predictor);
+        assertTrue(predicting.runSingleConnection().helloRetry, "first connection has nothing cached");
+        HybridTlsClient.Handshake predicted = predicting.runSingleConnection();
+        assertFalse(predicted.helloRetry, "cached group should be offered first");
+        assertEquals("secp384r1", predicted.group);
+
+        server.stop();
+        t.join(1000);
+        assertFalse(t.isAlive());
+    }
+}
@@ -64,6 +64,13 @@ public class HybridTlsServerKeystoreTest {
             assertNotNull(ctx, "createServerContext should return non-null context");
             assertTrue(ctx instanceof javax.net.ssl.SSLContext, "returned object must be SSLContext");
         }
+
+        // the context comes from the configured JSSE provider
+        srv.setJsseProvider(JsseProvider.parse("bcjsse"));
+        try (ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray())) {
+            javax.net.ssl.SSLContext ctx = srv.createServerContext(bin, pass);
+            assertEquals("BCJSSE", ctx.getProvider().getName());
+        }
     }
 }
 
@@ -0,0 +1,63 @@
+package bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RandomStrategyTest {
+
+    @Test
+    void parse_acceptsEverySpecForm() throws Exception {
+        assertSame(RandomStrategy.defaultStrategy(), RandomStrategy.parse(" Default "));
+        assertEquals("DRBG", RandomStrategy.parse("drbg").create().getAlgorithm());
+        assertEquals("DRBG", RandomStrategy.parse("drbg:256").create().getAlgorithm());
+        assertEquals("DRBG", RandomStrategy.parse("drbg:256:pr_and_reseed").create().getAlgorithm());
+        assertEquals("drbg:192:reseed_only", RandomStrategy.parse("DRBG:192:RESEED_ONLY").toString());
+        assertEquals("PerThread(DRBG)", RandomStrategy.parse("per-thread:drbg:256").create().getAlgorithm());
+        assertTrue(RandomStrategy.parse("per-thread").create().getAlgorithm().startsWith("PerThread("));
+    }
+
+    @Test
+    void parse_rejectsBadSpecsWithTheReason() {
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("fortuna"));
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("default:1"));
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("nativeprng-nonblocking:1"));
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("drbg:256:none:extra"));
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("drbg:abc"));
+        IllegalArgumentException capability = assertThrows(IllegalArgumentException.class,
+                () -> RandomStrategy.parse("drbg:256:sometimes"));
+        assertTrue(capability.getMessage().contains("sometimes"), capability.getMessage());
+        IllegalArgumentException strength = assertThrows(IllegalArgumentException.class,
+                () -> RandomStrategy.parse("drbg:512"));
+        assertTrue(strength.getMessage().contains("drbg:512"), strength.getMessage());
+        // the inner spec of per-thread is validated too
+        assertThrows(IllegalArgumentException.class, () -> RandomStrategy.parse("per-thread:drbg:512"));
+    }
+
+    @Test
+    void perThread_givesEachThreadItsOwnDelegate() throws Exception {
+        RandomStrategy.PerThreadSecureRandom random =
+                (RandomStrategy.PerThreadSecureRandom) RandomStrategy.parse("per-thread:drbg").create();
+        SecureRandom mine = random.current();
+        assertSame(mine, random.current(), "a thread keeps its delegate");
+        assertEquals("DRBG", mine.getAlgorithm());
+
+        AtomicReference<SecureRandom> other = new AtomicReference<>();
+        Thread t = new Thread(() -> other.set(random.current()));
+        t.start();
+        t.join();
+        assertNotNull(other.get());
+        assertNotSame(mine, other.get(), "another thread gets its own delegate");
+
+        byte[] a = new byte[32];
+        byte[] b = new byte[32];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        assertFalse(Arrays.equals(a, b));
+        assertEquals(16, random.generateSeed(16).length);
+    }
+}
@@ -0,0 +1,183 @@
+package bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultsStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private ResultsStore.Run run(String mode, double p99, double throughput) {
+        ResultsAnalyzer.Stats s = new ResultsAnalyzer.Stats();
+        s.concurrency = 10;
+        s.runs = 100;
+        s.success = 1000;
+        s.p99 = p99;
+        s.throughput = throughput;
+        ResultsStore.Run r = ResultsStore.Run.forCurrentEnvironment(mode, "x25519", s);
+        r.commit = "abc123";
+        return r;
+    }
+
+    @Test
+    void appendedRuns_readBackWithMetadata() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        long first = store.append(run("classical", 5.0, 1000));
+        long second = store.append(run("hybrid", 7.0, 800));
+
+        List<ResultsStore.Run> runs = store.runs();
+        assertEquals(2, runs.size());
+        assertEquals(first, runs.get(0).id);
+        assertEquals(second, runs.get(1).id);
+        assertEquals("hybrid", runs.get(1).mode);
+        assertEquals("abc123", runs.get(1).commit);
+        assertEquals(7.0, runs.get(1).stats.p99);
+        assertFalse(runs.get(0).jdk.isEmpty(), "JDK metadata should be captured");
+    }
+
+    @Test
+    void index_isRebuiltWhenMissing() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        store.append(run("classical", 5.0, 1000));
+        store.append(run("classical", 6.0, 900));
+        Files.delete(dir.resolve("runs.idx"));
+
+        List<ResultsStore.Run> runs = new ResultsStore(dir).runs();
+        assertEquals(2, runs.size());
+        assertEquals(6.0, runs.get(1).stats.p99);
+        assertTrue(Files.exists(dir.resolve("runs.idx")));
+    }
+
+    @Test
+    void corruptMiddleRecord_isSkippedAndLaterRecordsSurviveAppend() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        store.append(run("classical", 5.0, 1000));
+        long middle = store.append(run("classical", 6.0, 900));
+        store.append(run("classical", 7.0, 800));
+
+        // flip a byte inside the middle record's payload and force an index rebuild
+        Path data = dir.resolve("runs.dat");
+        byte[] bytes = Files.readAllBytes(data);
+        long frame = (bytes.length - 8) / 3;
+        int pos = (int) (8 + frame + frame / 2);
+        bytes[pos] ^= 0x5a;
+        Files.write(data, bytes);
+        Files.delete(dir.resolve("runs.idx"));
+
+        ResultsStore reopened = new ResultsStore(dir);
+        long appended = reopened.append(run("classical", 8.0, 700));
+        List<ResultsStore.Run> runs = reopened.runs();
+
+        assertEquals(3, runs.size(), "only the corrupt record should be missing");
+        assertEquals(Arrays.asList(1L, 3L, appended), Arrays.asList(runs.get(0).id, runs.get(1).id, runs.get(2).id));
+        assertEquals(7.0, runs.get(1).stats.p99);
+        assertEquals(8.0, runs.get(2).stats.p99);
+        assertEquals(4L, appended, "ids after the corrupt record must not shift");
+        assertNotEquals(middle, runs.get(1).id);
+    }
+
+    @Test
+    void tornTail_isDroppedOnNextAppend() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        store.append(run("classical", 5.0, 1000));
+        store.append(run("classical", 6.0, 900));
+
+        Path data = dir.resolve("runs.dat");
+        byte[] bytes = Files.readAllBytes(data);
+        Files.write(data, Arrays.copyOf(bytes, bytes.length - 10));
+        Files.delete(dir.resolve("runs.idx"));
+
+        ResultsStore reopened = new ResultsStore(dir);
+        reopened.append(run("classical", 7.0, 800));
+        List<ResultsStore.Run> runs = reopened.runs();
+        assertEquals(2, runs.size());
+        assertEquals(7.0, runs.get(1).stats.p99);
+    }
+
+    @Test
+    void laterBaseline_replacesEarlierOneWithSameName() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        long a = store.append(run("classical", 5.0, 1000));
+        long b = store.append(run("classical", 5.5, 1000));
+        store.saveBaseline("jdk21", Collections.singletonList(a));
+        store.saveBaseline("jdk21", Collections.singletonList(b));
+
+        assertEquals(Collections.singletonList(b), store.baseline("jdk21"));
+        assertNull(store.baseline("missing"));
+    }
+
+    @Test
+    void compare_flagsP99AndThroughputRegressions() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        store.append(run("classical", 5.0, 1000));
+        store.append(run("hybrid", 8.0, 800));
+        List<ResultsStore.Run> baseline = store.runs();
+        store.append(run("classical", 5.2, 990));   // within 10%
+        store.append(run("hybrid", 8.1, 600));      // throughput -25%
+
+        List<ResultsStore.Run> candidates = ResultsAnalyzer.latestAfter(baseline, store.runs());
+        List<ResultsAnalyzer.Comparison> result = ResultsAnalyzer.compare(baseline, candidates, 10, 10);
+
+        assertEquals(2, result.size());
+        assertFalse(result.get(0).regressed);
+        assertTrue(result.get(1).regressed);
+
+        ResultsStore.Run slow = run("classical", 6.0, 1000); // p99 +20%
+        assertTrue(ResultsAnalyzer.compare(baseline, Arrays.asList(slow), 10, 10).get(0).regressed);
+    }
+
+    @Test
+    void compare_zeroBaselineIsNotComparable() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        store.append(run("classical", 0.0, 0.0));
+        List<ResultsStore.Run> baseline = store.runs();
+
+        ResultsAnalyzer.Comparison c = ResultsAnalyzer.compare(baseline,
+                Arrays.asList(run("classical", 5.0, 1000)), 10, 10).get(0);
+        assertFalse(c.comparable());
+        assertFalse(c.regressed);
+    }
+
+    @Test
+    void compareToBaseline_returnsDistinctExitStatuses() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        long base = store.append(run("classical", 5.0, 1000));
+        store.saveBaseline("jdk21", Collections.singletonList(base));
+
+        assertEquals(ResultsAnalyzer.EXIT_UNKNOWN_BASELINE,
+                ResultsAnalyzer.compareToBaseline(store, "missing", Collections.emptyList(), 10, 10));
+        assertEquals(ResultsAnalyzer.EXIT_NOTHING_COMPARED,
+                ResultsAnalyzer.compareToBaseline(store, "jdk21", Collections.emptyList(), 10, 10));
+        store.append(run("classical", 5.1, 1000));
+        assertEquals(ResultsAnalyzer.EXIT_OK,
+                ResultsAnalyzer.compareToBaseline(store, "jdk21", Collections.emptyList(), 10, 10));
+        store.append(run("classical", 9.0, 1000));
+        assertEquals(ResultsAnalyzer.EXIT_REGRESSION,
+                ResultsAnalyzer.compareToBaseline(store, "jdk21", Collections.emptyList(), 10, 10));
+    }
+
+    @Test
+    void oversizedJvmArgs_areTruncatedInsteadOfFailingTheAppend() throws Exception {
+        ResultsStore store = new ResultsStore(dir);
+        ResultsStore.Run big = run("classical", 5.0, 1000);
+        big.jvmArgs = "-Dx=" + "\u00e9".repeat(40_000);
+        store.append(big);
+        store.append(run("hybrid", 7.0, 800));
+
+        List<ResultsStore.Run> runs = store.runs();
+        assertEquals(2, runs.size());
+        assertTrue(runs.get(0).jvmArgs.startsWith("-Dx=\u00e9"));
+        assertTrue(runs.get(0).jvmArgs.endsWith("\u2026"));
+        assertTrue(runs.get(0).jvmArgs.length() < big.jvmArgs.length());
+        assertEquals("hybrid", runs.get(1).mode);
+    }
+}